@@ -0,0 +1,82 @@
+package netty.http2.server;
+
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http2.Http2Headers;
+import netty.http2.server.handlers.HelloWorldHandler;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routing and request accessors as {@link Http2Handler} uses them: the route lookup and per-method handler
+ * selection behind {@code assignUriToHandler}, and the header and query views handlers read, next to the legacy
+ * {@code HashMap} accessors they replace.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class H2RequestBenchmark {
+    private static final String PATH = "/users/42/orders/7?fields=name,email&limit=10&sort=desc";
+
+    private H2Router router;
+    private Http2Headers headers;
+
+    @Setup
+    public void setUp() {
+        router = new H2Router();
+        H2RequestHandler handler = new H2ContextHandlerAdapter(new HelloWorldHandler());
+        for (String template : new String[]{"/", "/hello", "/users", "/users/:id", "/users/:id/orders",
+                "/users/:id/orders/:orderId", "/static/*file", "/api/v1/status", "/api/v1/items/:item"}) {
+            router.route(template).setRequestHandler(HttpMethod.GET, handler);
+        }
+        headers = Http2HandlerBenchmark.requestHeaders(PATH);
+    }
+
+    @Benchmark
+    public H2RequestHandler routeStatic() {
+        return route("/api/v1/status");
+    }
+
+    @Benchmark
+    public H2RequestHandler routeParams() {
+        return route("/users/42/orders/7");
+    }
+
+    @Benchmark
+    public H2RequestHandler routeWildcard() {
+        return route("/static/css/site.css");
+    }
+
+    @Benchmark
+    public H2RequestHandler routeMiss() {
+        return route("/no/such/path");
+    }
+
+    @Benchmark
+    public void headersAndQueryParams(Blackhole blackhole) {
+        H2Request request = newRequest();
+        blackhole.consume(request.getRequestHeaders().get("user-agent"));
+        blackhole.consume(request.getRequestHeaders().get("accept"));
+        blackhole.consume(request.getQueryParams().get("fields"));
+        blackhole.consume(request.getQueryParams().get("limit"));
+    }
+
+    @Benchmark
+    public void legacyHeadersAndQueryParamsMaps(Blackhole blackhole) {
+        H2Request request = newRequest();
+        blackhole.consume(request.getHeadersMap().get("user-agent"));
+        blackhole.consume(request.getHeadersMap().get("accept"));
+        blackhole.consume(request.getQueryParamsMap().get("fields"));
+        blackhole.consume(request.getQueryParamsMap().get("limit"));
+    }
+
+    private H2RequestHandler route(String path) {
+        H2Route route = router.find(path, new H2PathParams(router.getMaxParams()));
+        return route == null ? null : route.getRequestHandler(HttpMethod.GET);
+    }
+
+    private H2Request newRequest() {
+        return new H2Request(1, null, HttpMethod.GET, PATH.substring(0, PATH.indexOf('?')), PATH, headers);
+    }
+}
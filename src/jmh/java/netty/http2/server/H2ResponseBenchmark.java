@@ -0,0 +1,54 @@
+package netty.http2.server;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http2.Http2Headers;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building a response and encoding its body the way {@link Http2Handler} writes it: shared header
+ * templates, pooled payload buffers, and the mutable header copy a handler gets when it adds its own headers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class H2ResponseBenchmark {
+    private static final String JSON = "{\"id\":42,\"name\":\"Ada Lovelace\",\"email\":\"ada@example.com\"}";
+
+    private final ByteBufAllocator alloc = PooledByteBufAllocator.DEFAULT;
+
+    @Benchmark
+    public int textResponse() {
+        return encodeAndRelease(H2Response.of(200, "Hello World\n"));
+    }
+
+    @Benchmark
+    public int jsonResponse() {
+        return encodeAndRelease(H2Response.of(200, HttpHeaderValues.APPLICATION_JSON, JSON));
+    }
+
+    @Benchmark
+    public int legacyConstructor() {
+        return encodeAndRelease(new H2Response(200, JSON));
+    }
+
+    @Benchmark
+    public Http2Headers responseWithCustomHeader() {
+        H2Response response = H2Response.of(201, HttpHeaderValues.APPLICATION_JSON, JSON);
+        Http2Headers headers = response.getResponseHeaders().set("location", "/users/42");
+        encodeAndRelease(response);
+        return headers;
+    }
+
+    private int encodeAndRelease(H2Response response) {
+        ByteBuf payload = response.encodePayload(alloc);
+        int length = payload.readableBytes() + response.headers().size();
+        // Releases the payload too.
+        response.release();
+        return length;
+    }
+}
@@ -0,0 +1,63 @@
+package netty.http2.server;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.handler.codec.http2.DefaultHttp2Headers;
+import io.netty.handler.codec.http2.DefaultHttp2HeadersDecoder;
+import io.netty.handler.codec.http2.DefaultHttp2HeadersEncoder;
+import io.netty.handler.codec.http2.Http2Exception;
+import io.netty.handler.codec.http2.Http2Headers;
+import io.netty.handler.codec.http2.Http2HeadersEncoder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HPACK cost of the headers the server reads and writes on every stream. Encoder and decoder keep their dynamic
+ * tables across operations, as on a long-lived connection.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class HpackBenchmark {
+    private Http2Headers requestHeaders;
+    private Http2Headers responseHeaders;
+    private DefaultHttp2HeadersEncoder encoder;
+    private DefaultHttp2HeadersDecoder decoder;
+    private ByteBuf encodedRequest;
+
+    @Setup
+    public void setUp() throws Http2Exception {
+        requestHeaders = Http2HandlerBenchmark.requestHeaders("/users/42?fields=name,email&limit=10");
+        responseHeaders = new DefaultHttp2Headers()
+                .status("200")
+                .add("content-type", "application/json")
+                .add("content-length", "61")
+                .add("cache-control", "max-age=60")
+                .add("vary", "accept-encoding");
+        encoder = new DefaultHttp2HeadersEncoder(Http2HeadersEncoder.NEVER_SENSITIVE);
+        decoder = new DefaultHttp2HeadersDecoder(true);
+        encodedRequest = Http2HandlerBenchmark.encodeHeaderBlock(requestHeaders);
+    }
+
+    @TearDown
+    public void tearDown() {
+        encodedRequest.release();
+    }
+
+    @Benchmark
+    public int encodeResponseHeaders() throws Http2Exception {
+        ByteBuf out = PooledByteBufAllocator.DEFAULT.buffer();
+        try {
+            encoder.encodeHeaders(1, responseHeaders, out);
+            return out.readableBytes();
+        } finally {
+            out.release();
+        }
+    }
+
+    @Benchmark
+    public Http2Headers decodeRequestHeaders() throws Http2Exception {
+        return decoder.decodeHeaders(1, encodedRequest.duplicate());
+    }
+}
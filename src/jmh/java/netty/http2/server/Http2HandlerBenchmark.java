@@ -0,0 +1,177 @@
+package netty.http2.server;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http2.DefaultHttp2Headers;
+import io.netty.handler.codec.http2.DefaultHttp2HeadersEncoder;
+import io.netty.handler.codec.http2.Http2CodecUtil;
+import io.netty.handler.codec.http2.Http2Exception;
+import io.netty.handler.codec.http2.Http2Flags;
+import io.netty.handler.codec.http2.Http2FrameTypes;
+import io.netty.handler.codec.http2.Http2Headers;
+import io.netty.handler.codec.http2.Http2HeadersEncoder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives {@link Http2Handler} with encoded HEADERS frames through an {@link EmbeddedChannel}, so one operation is
+ * a whole request on the server: frame decoding, HPACK, routing, the handler, response encoding and the write.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class Http2HandlerBenchmark {
+    private ByteBuf staticRequest;
+    private ByteBuf paramRequest;
+    private EmbeddedChannel channel;
+    private int nextStreamId;
+
+    @Setup(Level.Trial)
+    public void setUpRoutes() throws Http2Exception {
+        H2Router router = new H2Router();
+        router.route("/hello").setRequestHandler(HttpMethod.GET, new HelloHandler());
+        router.route("/users/:id").setRequestHandler(HttpMethod.GET, new UserHandler());
+        ServerUtil.setRouter(router);
+
+        staticRequest = encodeHeaderBlock(requestHeaders("/hello"));
+        paramRequest = encodeHeaderBlock(requestHeaders("/users/42?fields=name,email&limit=10"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownRoutes() {
+        staticRequest.release();
+        paramRequest.release();
+    }
+
+    /**
+     * A fresh connection per iteration keeps stream ids far from exhaustion.
+     */
+    @Setup(Level.Iteration)
+    public void openConnection() {
+        channel = new EmbeddedChannel(new Http2HandlerBuilder().build());
+        // Open the connection window all the way; nothing acknowledges the responses' DATA frames otherwise, and
+        // once the default 64 KiB are spent every response would queue in the flow controller.
+        ByteBuf windowUpdate = Unpooled.buffer(4).writeInt(Http2CodecUtil.MAX_INITIAL_WINDOW_SIZE
+                - Http2CodecUtil.DEFAULT_WINDOW_SIZE);
+        channel.writeInbound(Unpooled.wrappedBuffer(Http2CodecUtil.connectionPrefaceBuf(),
+                frame(Http2FrameTypes.SETTINGS, 0, 0, Unpooled.EMPTY_BUFFER),
+                frame(Http2FrameTypes.WINDOW_UPDATE, 0, 0, windowUpdate)));
+        drainOutbound();
+        nextStreamId = 1;
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeConnection() {
+        channel.finishAndReleaseAll();
+    }
+
+    @Benchmark
+    public int staticRoute() {
+        return roundTrip(staticRequest);
+    }
+
+    @Benchmark
+    public int paramRouteWithHeadersAndQuery() {
+        return roundTrip(paramRequest);
+    }
+
+    private int roundTrip(ByteBuf headerBlock) {
+        int streamId = nextStreamId;
+        nextStreamId += 2;
+        channel.writeInbound(frame(Http2FrameTypes.HEADERS,
+                Http2Flags.END_HEADERS | Http2Flags.END_STREAM, streamId, headerBlock.retainedDuplicate()));
+        return drainOutbound();
+    }
+
+    private int drainOutbound() {
+        int bytes = 0;
+        ByteBuf out;
+        while ((out = channel.readOutbound()) != null) {
+            bytes += out.readableBytes();
+            out.release();
+        }
+        return bytes;
+    }
+
+    static Http2Headers requestHeaders(String path) {
+        return new DefaultHttp2Headers()
+                .method("GET")
+                .scheme("http")
+                .authority("localhost:8080")
+                .path(path)
+                .add("user-agent", "jmh")
+                .add("accept", "application/json")
+                .add("accept-encoding", "gzip, deflate");
+    }
+
+    /**
+     * Encodes {@code headers} without touching the HPACK dynamic table, so the same block can be replayed on
+     * every stream.
+     */
+    static ByteBuf encodeHeaderBlock(Http2Headers headers) throws Http2Exception {
+        DefaultHttp2HeadersEncoder encoder = new DefaultHttp2HeadersEncoder(Http2HeadersEncoder.NEVER_SENSITIVE);
+        encoder.maxHeaderTableSize(0);
+        ByteBuf block = Unpooled.buffer();
+        encoder.encodeHeaders(1, headers, block);
+        return block;
+    }
+
+    private static ByteBuf frame(byte type, int flags, int streamId, ByteBuf payload) {
+        ByteBuf frame = Unpooled.buffer(Http2CodecUtil.FRAME_HEADER_LENGTH);
+        frame.writeMedium(payload.readableBytes());
+        frame.writeByte(type);
+        frame.writeByte(flags);
+        frame.writeInt(streamId);
+        return Unpooled.wrappedBuffer(frame, payload);
+    }
+
+    private static final class HelloHandler implements H2RequestHandler {
+        @Override
+        public H2Response handleGet(H2Request request) {
+            return H2Response.of(200, "Hello World\n");
+        }
+
+        @Override
+        public H2Response handlePost(H2Request request, String content) {
+            return null;
+        }
+
+        @Override
+        public H2Response handlePut(H2Request request, String content) {
+            return null;
+        }
+
+        @Override
+        public H2Response handleDelete(H2Request request) {
+            return null;
+        }
+    }
+
+    private static final class UserHandler implements H2RequestHandler {
+        @Override
+        public H2Response handleGet(H2Request request) {
+            String body = "{\"id\":\"" + request.getPathParams().get("id")
+                    + "\",\"fields\":\"" + request.getQueryParams().get("fields")
+                    + "\",\"agent\":\"" + request.getRequestHeaders().get("user-agent") + "\"}";
+            return H2Response.of(200, body);
+        }
+
+        @Override
+        public H2Response handlePost(H2Request request, String content) {
+            return null;
+        }
+
+        @Override
+        public H2Response handlePut(H2Request request, String content) {
+            return null;
+        }
+
+        @Override
+        public H2Response handleDelete(H2Request request) {
+            return null;
+        }
+    }
+}
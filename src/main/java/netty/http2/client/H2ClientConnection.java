@@ -0,0 +1,496 @@
+package netty.http2.client;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.EventLoop;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http2.Http2ConnectionAdapter;
+import io.netty.handler.codec.http2.Http2Error;
+import io.netty.handler.codec.http2.Http2Exception;
+import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.handler.codec.http2.Http2Stream;
+import io.netty.handler.codec.http2.HttpConversionUtil;
+import io.netty.handler.codec.http2.HttpToHttp2ConnectionHandler;
+import io.netty.handler.ssl.SslContext;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One pooled HTTP/2 connection of an {@link Http2Client}. Tracks how many streams it has in flight, so the pool can
+ * pick the least loaded connection, and stops taking requests once the server sends GOAWAY.
+ */
+final class H2ClientConnection {
+    private final Http2Client client;
+    private final HttpResponseHandler responseHandler;
+    private final Http2ClientInitializer initializer;
+    // Requests handed to the channel whose HEADERS are not yet written, and streams open on the connection.
+    private final AtomicInteger pendingWrites = new AtomicInteger();
+    private final AtomicInteger activeStreams = new AtomicInteger();
+    private final AtomicBoolean unflushed = new AtomicBoolean();
+    private final CompletableFuture<H2ClientConnection> ready = new CompletableFuture<>();
+    // Requests sent with execute, keyed by stream id. Only touched on the event loop.
+    private final IntObjectMap<PendingRequest> pendingResponses = new IntObjectHashMap<>();
+    // Requests without a stream yet: the queue holds those admitted by a permit, waiting for a stream slot or for
+    // the channel to become writable; the overflow holds those waiting for a permit, up to as many again. Only
+    // touched on the event loop.
+    private final Semaphore admission;
+    private final Semaphore overflowAdmission;
+    private final H2OverflowPolicy overflowPolicy;
+    private final ArrayDeque<PendingRequest> queue = new ArrayDeque<>();
+    private final ArrayDeque<PendingRequest> overflow = new ArrayDeque<>();
+    private boolean drainScheduled;
+    private volatile Channel channel;
+    private volatile boolean draining;
+    private volatile long lastUsedNanos = System.nanoTime();
+    private volatile long readyNanos;
+
+    H2ClientConnection(Http2Client client, SslContext sslCtx, String serverIp, int serverPort, boolean priorKnowledge,
+                       HttpResponseHandler responseHandler, int maxPendingRequests, H2OverflowPolicy overflowPolicy) {
+        this.client = client;
+        this.responseHandler = responseHandler;
+        this.admission = new Semaphore(maxPendingRequests);
+        this.overflowAdmission = new Semaphore(maxPendingRequests);
+        this.overflowPolicy = overflowPolicy;
+        this.initializer = new Http2ClientInitializer(sslCtx, serverIp, serverPort, Integer.MAX_VALUE,
+                responseHandler, new ConnectionListener(), priorKnowledge);
+    }
+
+    /**
+     * Connects and completes once the server's first SETTINGS arrive, or fails after {@code timeoutSeconds}.
+     */
+    CompletableFuture<H2ClientConnection> connect(Bootstrap bootstrap, int timeoutSeconds) {
+        ChannelFuture connectFuture = bootstrap.clone().handler(initializer).connect();
+        channel = connectFuture.channel();
+        ScheduledFuture<?> timeout = channel.eventLoop().schedule(() -> {
+            if (ready.completeExceptionally(new IllegalStateException("Timed out waiting for settings"))) {
+                channel.close();
+            }
+        }, timeoutSeconds, TimeUnit.SECONDS);
+        ready.whenComplete((connection, cause) -> timeout.cancel(false));
+
+        connectFuture.addListener(future -> {
+            if (!future.isSuccess()) {
+                ready.completeExceptionally(future.cause());
+                return;
+            }
+            channel.closeFuture().addListener(closeFuture -> {
+                ready.completeExceptionally(new ClosedChannelException());
+                client.connectionClosed(this);
+            });
+            initializer.settingsHandler().settingsFuture().addListener(settingsFuture -> {
+                if (settingsFuture.isSuccess()) {
+                    ChannelPipeline pipeline = channel.pipeline();
+                    pipeline.addBefore(pipeline.context(responseHandler).name(), "h2-responses",
+                            new ResponseDispatcher());
+                    readyNanos = System.nanoTime();
+                    ready.complete(this);
+                } else {
+                    ready.completeExceptionally(settingsFuture.cause());
+                }
+            });
+        });
+        return ready;
+    }
+
+    /**
+     * Queues the request for writing without flushing it. Blocks while the queue is full under
+     * {@link H2OverflowPolicy#WAIT}, for at most {@code timeoutNanos}.
+     *
+     * @throws RejectedExecutionException if the queue is full, or stays full for too long
+     */
+    void send(FullHttpRequest request, long timeoutNanos) {
+        boolean admitted = admission.tryAcquire();
+        if (!admitted && overflowPolicy == H2OverflowPolicy.WAIT) {
+            // The queue only moves once the requests ahead are on the wire.
+            flush();
+            try {
+                admitted = admission.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (!admitted) {
+            request.release();
+            throw new RejectedExecutionException("Request queue of the connection to " + channel.remoteAddress()
+                    + " is full");
+        }
+        lastUsedNanos = System.nanoTime();
+        pendingWrites.incrementAndGet();
+        unflushed.set(true);
+        PendingRequest pending = new PendingRequest(request, null, channel.newPromise(), true);
+        runOnEventLoop(pending, () -> submit(pending, 0));
+    }
+
+    CompletableFuture<H2ResponseFromServer> execute(FullHttpRequest request, long timeoutNanos) {
+        CompletableFuture<H2ResponseFromServer> response = new CompletableFuture<>();
+        boolean admitted = admission.tryAcquire();
+        if (!admitted && (overflowPolicy == H2OverflowPolicy.REJECT || !overflowAdmission.tryAcquire())) {
+            request.release();
+            response.completeExceptionally(new RejectedExecutionException("Request queue of the connection to "
+                    + channel.remoteAddress() + " is full"));
+            return response;
+        }
+        lastUsedNanos = System.nanoTime();
+        pendingWrites.incrementAndGet();
+        PendingRequest pending = new PendingRequest(request, response, null, admitted);
+        runOnEventLoop(pending, () -> submit(pending, timeoutNanos));
+        return response;
+    }
+
+    /**
+     * Waits until the requests handed to {@link #send(FullHttpRequest, long)} so far have reached the codec and
+     * been registered with the response handler.
+     */
+    void awaitQueuedWrites(long timeout, TimeUnit unit) {
+        Future<ChannelPromise> lastSend;
+        try {
+            lastSend = channel.eventLoop().submit(this::lastQueuedSend).awaitUninterruptibly();
+        } catch (RejectedExecutionException e) {
+            // The event loop is gone, and with it anything still queued.
+            return;
+        }
+        // Sends leave the queue in order, so once the last one is written all earlier ones are too.
+        ChannelPromise writePromise = lastSend.getNow();
+        if (writePromise != null && !writePromise.awaitUninterruptibly(timeout, unit)) {
+            throw new IllegalStateException("Timed out waiting for a stream to send on");
+        }
+    }
+
+    private ChannelPromise lastQueuedSend() {
+        Iterator<PendingRequest> iterator = queue.descendingIterator();
+        while (iterator.hasNext()) {
+            PendingRequest pending = iterator.next();
+            if (pending.writePromise != null) {
+                return pending.writePromise;
+            }
+        }
+        return null;
+    }
+
+    private void runOnEventLoop(PendingRequest pending, Runnable task) {
+        EventLoop eventLoop = channel.eventLoop();
+        if (eventLoop.inEventLoop()) {
+            task.run();
+            return;
+        }
+        try {
+            eventLoop.execute(task);
+        } catch (RejectedExecutionException e) {
+            drop(pending, e);
+            if (pending.response == null) {
+                throw e;
+            }
+        }
+    }
+
+    private void submit(PendingRequest pending, long timeoutNanos) {
+        if (pending.response != null) {
+            pending.timeout = channel.eventLoop().schedule(() -> timeOut(pending, timeoutNanos), timeoutNanos,
+                    TimeUnit.NANOSECONDS);
+        }
+        (pending.admitted ? queue : overflow).add(pending);
+        drain();
+        // Whoever sent it may flush before it gets a stream; the drain that finally writes it has to flush.
+        pending.deferred = true;
+    }
+
+    /**
+     * Writes queued requests while the server allows more concurrent streams and the channel is writable, then
+     * lets waiting requests into the freed queue slots.
+     */
+    private void drain() {
+        drainScheduled = false;
+        boolean flush = false;
+        while (true) {
+            while (!overflow.isEmpty() && admission.tryAcquire()) {
+                PendingRequest waiting = overflow.poll();
+                overflowAdmission.release();
+                waiting.admitted = true;
+                queue.add(waiting);
+            }
+            if (queue.isEmpty() || !canDispatch()) {
+                break;
+            }
+            PendingRequest pending = queue.poll();
+            flush |= pending.response != null || pending.deferred;
+            dispatch(pending);
+        }
+        if (flush) {
+            channel.flush();
+        }
+    }
+
+    private void scheduleDrain() {
+        if (!drainScheduled && !(queue.isEmpty() && overflow.isEmpty())) {
+            drainScheduled = true;
+            channel.eventLoop().execute(this::drain);
+        }
+    }
+
+    private boolean canDispatch() {
+        return channel.isWritable() && initializer.connectionHandler().connection().local().canOpenStream();
+    }
+
+    private void dispatch(PendingRequest pending) {
+        admission.release();
+        int id = assignStreamId(pending.request);
+        pending.streamId = id;
+        ChannelPromise writePromise = pending.writePromise != null ? pending.writePromise : channel.newPromise();
+        if (pending.response != null) {
+            pendingResponses.put(id, pending);
+        } else {
+            responseHandler.put(id, writePromise, channel.newPromise());
+        }
+        writePromise.addListener(future -> {
+            pendingWrites.decrementAndGet();
+            if (!future.isSuccess()) {
+                fail(id, future.cause());
+            }
+            closeIfDrained();
+        });
+        channel.write(pending.request, writePromise);
+    }
+
+    /**
+     * Fails a request that never got a stream.
+     */
+    private void drop(PendingRequest pending, Throwable cause) {
+        (pending.admitted ? admission : overflowAdmission).release();
+        pendingWrites.decrementAndGet();
+        pending.request.release();
+        if (pending.timeout != null) {
+            pending.timeout.cancel(false);
+        }
+        if (pending.response != null) {
+            pending.response.completeExceptionally(cause);
+        } else {
+            pending.writePromise.tryFailure(cause);
+        }
+    }
+
+    /**
+     * Takes the next stream id from the connection itself. The request must be written right after, on the event
+     * loop, so its HEADERS go out on exactly that id.
+     */
+    private int assignStreamId(FullHttpRequest request) {
+        int id = initializer.connectionHandler().connection().local().incrementAndGetNextStreamId();
+        request.headers().setInt(HttpConversionUtil.ExtensionHeaderNames.STREAM_ID.text(), id);
+        return id;
+    }
+
+    private void complete(ChannelHandlerContext ctx, int id, FullHttpResponse msg) {
+        PendingRequest pending = pendingResponses.remove(id);
+        pending.timeout.cancel(false);
+        pending.response.complete(ClientUtil.parseResponseFromServer(ctx, msg));
+    }
+
+    private boolean fail(int id, Throwable cause) {
+        PendingRequest pending = pendingResponses.remove(id);
+        if (pending == null) {
+            return false;
+        }
+        pending.timeout.cancel(false);
+        pending.response.completeExceptionally(cause);
+        return true;
+    }
+
+    private void timeOut(PendingRequest pending, long timeoutNanos) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(timeoutNanos);
+        if (pending.streamId == 0) {
+            if (queue.remove(pending) || overflow.remove(pending)) {
+                drop(pending, new TimeoutException("No stream became available within " + millis + " ms"));
+                drain();
+            }
+        } else if (fail(pending.streamId, new TimeoutException("No response on stream " + pending.streamId
+                + " within " + millis + " ms"))) {
+            // Tell the server to stop working on it.
+            HttpToHttp2ConnectionHandler connectionHandler = initializer.connectionHandler();
+            connectionHandler.resetStream(channel.pipeline().context(connectionHandler), pending.streamId,
+                    Http2Error.CANCEL.code(), channel.newPromise());
+            channel.flush();
+        }
+    }
+
+    /**
+     * Flushes the channel if anything was written since the last flush.
+     */
+    void flush() {
+        if (unflushed.getAndSet(false)) {
+            channel.flush();
+        }
+    }
+
+    int outstanding() {
+        return pendingWrites.get() + activeStreams.get();
+    }
+
+    /**
+     * @return the server's MAX_CONCURRENT_STREAMS. Read off the event loop, so it may lag a SETTINGS update
+     * by a moment, which is fine for load balancing.
+     */
+    int maxConcurrentStreams() {
+        return initializer.connectionHandler().connection().local().maxActiveStreams();
+    }
+
+    boolean isUsable() {
+        return !draining && ready.isDone() && !ready.isCompletedExceptionally() && channel.isActive();
+    }
+
+    long idleNanos(long now) {
+        return outstanding() > 0 ? 0 : now - lastUsedNanos;
+    }
+
+    /**
+     * @return how long ago the server's first SETTINGS arrived, or 0 if they never did
+     */
+    long uptimeNanos(long now) {
+        return ready.isDone() && !ready.isCompletedExceptionally() ? now - readyNanos : 0;
+    }
+
+    HttpResponseHandler responseHandler() {
+        return responseHandler;
+    }
+
+    /**
+     * Takes the connection out of rotation and closes it once its in-flight streams finish.
+     */
+    void retire() {
+        draining = true;
+        closeIfDrained();
+    }
+
+    ChannelFuture close() {
+        return channel.close();
+    }
+
+    private void closeIfDrained() {
+        if (draining && outstanding() == 0) {
+            // Let the frame that closed the last stream finish its trip through the pipeline first.
+            channel.eventLoop().execute(channel::close);
+        }
+    }
+
+    private final class ConnectionListener extends Http2ConnectionAdapter {
+        @Override
+        public void onStreamActive(Http2Stream stream) {
+            activeStreams.incrementAndGet();
+        }
+
+        @Override
+        public void onStreamClosed(Http2Stream stream) {
+            activeStreams.decrementAndGet();
+            // A response completes its request before the stream closes, so anything left here got none, e.g.
+            // a stream above the last id of a GOAWAY.
+            IllegalStateException cause =
+                    new IllegalStateException("Stream " + stream.id() + " closed without a response");
+            if (!fail(stream.id(), cause)) {
+                responseHandler.failStream(stream.id(), cause);
+            }
+            // Not from inside the decoder, which may be iterating the active streams.
+            scheduleDrain();
+            closeIfDrained();
+        }
+
+        @Override
+        public void onGoAwayReceived(int lastStreamId, long errorCode, ByteBuf debugData) {
+            draining = true;
+            client.connectionDraining(H2ClientConnection.this);
+            closeIfDrained();
+        }
+    }
+
+    /**
+     * Completes requests sent with {@link #execute(FullHttpRequest, long)} and passes anything else on to the
+     * response handler.
+     */
+    private final class ResponseDispatcher extends ChannelInboundHandlerAdapter {
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            if (msg instanceof FullHttpResponse) {
+                FullHttpResponse response = (FullHttpResponse) msg;
+                Integer id = response.headers().getInt(HttpConversionUtil.ExtensionHeaderNames.STREAM_ID.text());
+                if (id != null && pendingResponses.containsKey(id)) {
+                    try {
+                        complete(ctx, id, response);
+                    } finally {
+                        response.release();
+                    }
+                    return;
+                }
+            }
+            ctx.fireChannelRead(msg);
+            if (msg instanceof Http2Settings) {
+                // MAX_CONCURRENT_STREAMS may have gone up.
+                drain();
+            }
+        }
+
+        @Override
+        public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+            if (ctx.channel().isWritable()) {
+                drain();
+            }
+            ctx.fireChannelWritabilityChanged();
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            if (!(cause instanceof Http2Exception.StreamException)
+                    || !fail(((Http2Exception.StreamException) cause).streamId(), cause)) {
+                ctx.fireExceptionCaught(cause);
+            }
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            for (int id : pendingResponses.keySet().toArray(new Integer[0])) {
+                fail(id, new ClosedChannelException());
+            }
+            PendingRequest pending;
+            while ((pending = queue.poll()) != null || (pending = overflow.poll()) != null) {
+                drop(pending, new ClosedChannelException());
+            }
+            ctx.fireChannelInactive();
+        }
+    }
+
+    private static final class PendingRequest {
+        final FullHttpRequest request;
+        // Set for execute, completed with the response.
+        final CompletableFuture<H2ResponseFromServer> response;
+        // Set for send, completed once the request is written.
+        final ChannelPromise writePromise;
+        boolean admitted;
+        boolean deferred;
+        int streamId;
+        ScheduledFuture<?> timeout;
+
+        PendingRequest(FullHttpRequest request, CompletableFuture<H2ResponseFromServer> response,
+                       ChannelPromise writePromise, boolean admitted) {
+            this.request = request;
+            this.response = response;
+            this.writePromise = writePromise;
+            this.admitted = admitted;
+        }
+    }
+}
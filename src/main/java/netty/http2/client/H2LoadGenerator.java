@@ -0,0 +1,402 @@
+package netty.http2.client;
+
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import netty.http2.server.H2LatencyHistogram;
+import netty.http2.transport.H2Transport;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop HTTP/2 load generator in the spirit of h2load and wrk2, built on {@link Http2Client}. Requests are
+ * scheduled at a fixed rate over {@code connections} &times; {@code streams} concurrent streams. A request that
+ * cannot be sent on time because every stream is busy is sent as soon as one frees up, but its latency is still
+ * measured from its scheduled time, so a stalled server shows up in the percentiles instead of silently lowering
+ * the request rate (coordinated omission). Requests still waiting for a stream when the run ends are reported as
+ * timed out. With a rate of 0 requests are sent as fast as streams free up.
+ * <p>
+ * Usage: {@code H2LoadGenerator [-c connections] [-m streams] [-r rate] [-w warmupSeconds] [-d durationSeconds]
+ * [-X method] [--data body] [--json file] [--prior-knowledge] URL}. The client and server frame loggers write
+ * every frame at INFO, so raise {@code netty.http2.client.Http2ClientInitializer} and
+ * {@code netty.http2.server.Http2Handler} to WARN before measuring anything.
+ */
+public final class H2LoadGenerator {
+    private static final Logger logger = LogManager.getLogger(H2LoadGenerator.class);
+    // Buckets at most ~3% wide, enough to tell p99 from p99.9.
+    private static final int HISTOGRAM_PRECISION_BITS = 5;
+
+    private final String serverIp;
+    private final int serverPort;
+    private final boolean sslSupport;
+    private final boolean priorKnowledge;
+    private final H2Transport transport;
+    private final Http2Request request;
+    private final int connections;
+    private final int streams;
+    private final int requestsPerSecond;
+    private final long warmupNanos;
+    private final long durationNanos;
+    private final int responseTimeout;
+
+    private final LongAdder scheduled = new LongAdder();
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder errored = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder measuredInFlight = new LongAdder();
+    private final LongAdder[] statusClasses = new LongAdder[5];
+    private final LongAdder responseBytes = new LongAdder();
+    private final H2LatencyHistogram correctedLatency = new H2LatencyHistogram(HISTOGRAM_PRECISION_BITS);
+    private final H2LatencyHistogram uncorrectedLatency = new H2LatencyHistogram(HISTOGRAM_PRECISION_BITS);
+    private Semaphore inFlight;
+
+    public H2LoadGenerator(Builder builder) {
+        this.serverIp = builder.serverIp;
+        this.serverPort = builder.serverPort;
+        this.sslSupport = builder.sslSupport;
+        this.priorKnowledge = builder.priorKnowledge;
+        this.transport = builder.transport;
+        this.request = builder.request;
+        this.connections = builder.connections;
+        this.streams = builder.streams;
+        this.requestsPerSecond = builder.requestsPerSecond;
+        this.warmupNanos = builder.warmupNanos;
+        this.durationNanos = builder.durationNanos;
+        this.responseTimeout = builder.responseTimeout;
+        for (int i = 0; i < statusClasses.length; i++) {
+            statusClasses[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Connects, runs the warmup and the measured window, waits for outstanding responses, which time out after
+     * the response timeout, and disconnects.
+     */
+    public H2LoadReport run() throws Exception {
+        Http2Client client = Http2Client.Builder.newInstance()
+                .setServerIp(serverIp)
+                .setServerPort(serverPort)
+                .setSslSupport(sslSupport)
+                .setPriorKnowledge(priorKnowledge)
+                .setTransport(transport)
+                .setResponseTimeout(responseTimeout)
+                .setMinConnections(connections)
+                .setMaxConnections(connections)
+                .setMaxStreamsPerConnection(streams)
+                .build().initClient();
+        inFlight = new Semaphore(connections * streams);
+        try {
+            logger.warn("Running " + connections + " connection(s) to [" + serverIp + ':' + serverPort + "], "
+                    + streams + " stream(s) each, "
+                    + (requestsPerSecond > 0 ? requestsPerSecond + " req/s" : "unthrottled"));
+
+            long start = System.nanoTime();
+            long measureStart = start + warmupNanos;
+            long end = measureStart + durationNanos;
+            generate(client, start, measureStart, end);
+
+            // Every request completes or times out within the response timeout; allow a little slack on top.
+            inFlight.tryAcquire(connections * streams, responseTimeout + 1, TimeUnit.SECONDS);
+            long[] statuses = new long[statusClasses.length];
+            for (int i = 0; i < statuses.length; i++) {
+                statuses[i] = statusClasses[i].sum();
+            }
+            return new H2LoadReport(durationNanos, scheduled.sum(), succeeded.sum(), failed.sum(), errored.sum(),
+                    timedOut.sum() + measuredInFlight.sum(), statuses, responseBytes.sum(), correctedLatency,
+                    uncorrectedLatency);
+        } finally {
+            client.close();
+        }
+    }
+
+    private void generate(Http2Client client, long start, long measureStart, long end) throws InterruptedException {
+        long intervalNanos = requestsPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / requestsPerSecond : 0;
+        long nextSend = start;
+        while (true) {
+            long intended = 0;
+            if (intervalNanos > 0) {
+                intended = nextSend;
+                nextSend += intervalNanos;
+                if (intended >= end) {
+                    return;
+                }
+                parkUntil(intended);
+            }
+            // The client spreads requests over the least loaded connections, so N x M permits keep each
+            // connection at about M streams.
+            if (!inFlight.tryAcquire(Math.max(0, end - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                if (intervalNanos > 0) {
+                    countUnsent(intended, intervalNanos, measureStart, end);
+                }
+                return;
+            }
+            long now = System.nanoTime();
+            if (intervalNanos == 0) {
+                intended = now;
+                if (intended >= end) {
+                    inFlight.release();
+                    return;
+                }
+            }
+
+            boolean measured = intended >= measureStart;
+            if (measured) {
+                scheduled.increment();
+                measuredInFlight.increment();
+            }
+            long intendedNanos = intended;
+            client.execute(request.createRequest()).whenComplete((response, cause) -> {
+                if (measured) {
+                    record(intendedNanos, now, response, cause);
+                }
+                inFlight.release();
+            });
+        }
+    }
+
+    /**
+     * Every stream stayed busy until the end of the run, so the requests due from {@code firstIntended} on were
+     * never sent. Counting them as scheduled and timed out keeps a stall that outlasts the run from hiding the
+     * backlog it built up.
+     */
+    private void countUnsent(long firstIntended, long intervalNanos, long measureStart, long end) {
+        long first = firstIntended;
+        if (first < measureStart) {
+            first += (measureStart - first + intervalNanos - 1) / intervalNanos * intervalNanos;
+        }
+        if (first < end) {
+            long unsent = (end - 1 - first) / intervalNanos + 1;
+            scheduled.add(unsent);
+            timedOut.add(unsent);
+        }
+    }
+
+    private void record(long intendedNanos, long sentNanos, H2ResponseFromServer response, Throwable cause) {
+        measuredInFlight.decrement();
+        if (cause != null) {
+            Throwable unwrapped = cause instanceof CompletionException && cause.getCause() != null
+                    ? cause.getCause() : cause;
+            (unwrapped instanceof TimeoutException ? timedOut : errored).increment();
+            logger.debug("Request failed", unwrapped);
+            return;
+        }
+        long now = System.nanoTime();
+        correctedLatency.record(now - intendedNanos);
+        uncorrectedLatency.record(now - sentNanos);
+        int status = response.getResponseStatus();
+        int statusClass = status / 100 - 1;
+        if (statusClass >= 0 && statusClass < statusClasses.length) {
+            statusClasses[statusClass].increment();
+        }
+        (status < 400 ? succeeded : failed).increment();
+        responseBytes.add(response.getContentLength());
+    }
+
+    private static void parkUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Builder builder = Builder.newInstance();
+        HttpMethod method = HttpMethod.GET;
+        String data = "";
+        String jsonFile = null;
+        String url = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-c":
+                    builder.setConnections(Integer.parseInt(args[++i]));
+                    break;
+                case "-m":
+                    builder.setStreams(Integer.parseInt(args[++i]));
+                    break;
+                case "-r":
+                    builder.setRequestsPerSecond(Integer.parseInt(args[++i]));
+                    break;
+                case "-w":
+                    builder.setWarmup(Long.parseLong(args[++i]), TimeUnit.SECONDS);
+                    break;
+                case "-d":
+                    builder.setDuration(Long.parseLong(args[++i]), TimeUnit.SECONDS);
+                    break;
+                case "-X":
+                    method = HttpMethod.valueOf(args[++i]);
+                    break;
+                case "--data":
+                    data = args[++i];
+                    break;
+                case "--json":
+                    jsonFile = args[++i];
+                    break;
+                case "--prior-knowledge":
+                    builder.setPriorKnowledge(true);
+                    break;
+                default:
+                    url = args[i];
+            }
+        }
+        if (url == null) {
+            System.err.println("Usage: H2LoadGenerator [-c connections] [-m streams] [-r rate] [-w warmupSeconds]"
+                    + " [-d durationSeconds] [-X method] [--data body] [--json file] [--prior-knowledge] URL");
+            System.exit(2);
+        }
+
+        URI uri = URI.create(url);
+        boolean ssl = "https".equalsIgnoreCase(uri.getScheme());
+        Http2Request.Builder requestBuilder = Http2Request.Builder.newInstance()
+                .setHttpMethod(method)
+                .setUriContext(uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath())
+                .setRequestData(data);
+        if (uri.getRawQuery() != null) {
+            QueryStringDecoder query = new QueryStringDecoder(uri.getRawQuery(), false);
+            for (Map.Entry<String, List<String>> parameter : query.parameters().entrySet()) {
+                requestBuilder.addQueryParam(parameter.getKey(), parameter.getValue().get(0));
+            }
+        }
+
+        H2LoadReport report = builder
+                .setServerIp(uri.getHost())
+                .setServerPort(uri.getPort() > 0 ? uri.getPort() : ssl ? 443 : 80)
+                .setSslSupport(ssl)
+                .setRequest(requestBuilder.build())
+                .build().run();
+
+        System.out.print(report.toText());
+        if (jsonFile != null) {
+            try (Writer writer = new FileWriter(jsonFile)) {
+                report.toJson().write(writer, 2, 0);
+            } catch (IOException e) {
+                logger.error("Cannot write " + jsonFile, e);
+            }
+        }
+    }
+
+    public static class Builder {
+        private String serverIp;
+        private int serverPort;
+        private boolean sslSupport;
+        private boolean priorKnowledge;
+        private H2Transport transport;
+        private Http2Request request;
+        private int connections;
+        private int streams;
+        private int requestsPerSecond;
+        private long warmupNanos;
+        private long durationNanos;
+        private int responseTimeout;
+
+        private Builder() {
+            transport = H2Transport.AUTO;
+            connections = 1;
+            streams = 10;
+            warmupNanos = TimeUnit.SECONDS.toNanos(5);
+            durationNanos = TimeUnit.SECONDS.toNanos(30);
+            responseTimeout = 5;
+        }
+
+        public static Builder newInstance() {
+            return new Builder();
+        }
+
+        public Builder setServerIp(String serverIp) {
+            this.serverIp = serverIp;
+            return this;
+        }
+
+        public Builder setServerPort(int serverPort) {
+            this.serverPort = serverPort;
+            return this;
+        }
+
+        public Builder setSslSupport(boolean sslSupport) {
+            this.sslSupport = sslSupport;
+            return this;
+        }
+
+        /**
+         * See {@link Http2Client.Builder#setPriorKnowledge(boolean)}.
+         */
+        public Builder setPriorKnowledge(boolean priorKnowledge) {
+            this.priorKnowledge = priorKnowledge;
+            return this;
+        }
+
+        public Builder setTransport(H2Transport transport) {
+            this.transport = transport;
+            return this;
+        }
+
+        /**
+         * Sets the request sent over and over; a fresh copy is created for every send.
+         */
+        public Builder setRequest(Http2Request request) {
+            this.request = request;
+            return this;
+        }
+
+        public Builder setConnections(int connections) {
+            this.connections = connections;
+            return this;
+        }
+
+        /**
+         * @param streams concurrent streams per connection
+         */
+        public Builder setStreams(int streams) {
+            this.streams = streams;
+            return this;
+        }
+
+        /**
+         * @param requestsPerSecond target rate across all connections; 0 sends as fast as streams free up
+         */
+        public Builder setRequestsPerSecond(int requestsPerSecond) {
+            this.requestsPerSecond = requestsPerSecond;
+            return this;
+        }
+
+        /**
+         * Requests scheduled during the warmup are sent but left out of the report.
+         */
+        public Builder setWarmup(long warmup, TimeUnit unit) {
+            this.warmupNanos = unit.toNanos(warmup);
+            return this;
+        }
+
+        public Builder setDuration(long duration, TimeUnit unit) {
+            this.durationNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * @param responseTimeout seconds to wait for the connection preface and for each response
+         */
+        public Builder setResponseTimeout(int responseTimeout) {
+            this.responseTimeout = responseTimeout;
+            return this;
+        }
+
+        public H2LoadGenerator build() {
+            if (connections < 1 || streams < 1) {
+                throw new IllegalArgumentException("connections and streams must be at least 1");
+            }
+            return new H2LoadGenerator(this);
+        }
+    }
+}
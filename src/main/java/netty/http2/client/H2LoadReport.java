@@ -0,0 +1,177 @@
+package netty.http2.client;
+
+import netty.http2.server.H2LatencyHistogram;
+import org.json.JSONObject;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outcome of one {@link H2LoadGenerator} run, covering only requests scheduled after the warmup. Latency is
+ * reported twice: corrected, measured from when a request was due to be sent, and uncorrected, measured from
+ * when it was actually written. Under overload the two diverge, and the corrected figures are the ones a user
+ * arriving at the target rate would see.
+ */
+public final class H2LoadReport {
+    private static final double[] PERCENTILES = {50, 75, 90, 99, 99.9, 99.99};
+
+    private final long durationNanos;
+    private final long scheduled;
+    private final long succeeded;
+    private final long failed;
+    private final long errored;
+    private final long timedOut;
+    private final long[] statusClasses;
+    private final long responseBytes;
+    private final H2LatencyHistogram correctedLatency;
+    private final H2LatencyHistogram uncorrectedLatency;
+
+    H2LoadReport(long durationNanos, long scheduled, long succeeded, long failed, long errored, long timedOut,
+                 long[] statusClasses, long responseBytes, H2LatencyHistogram correctedLatency,
+                 H2LatencyHistogram uncorrectedLatency) {
+        this.durationNanos = durationNanos;
+        this.scheduled = scheduled;
+        this.succeeded = succeeded;
+        this.failed = failed;
+        this.errored = errored;
+        this.timedOut = timedOut;
+        this.statusClasses = statusClasses;
+        this.responseBytes = responseBytes;
+        this.correctedLatency = correctedLatency;
+        this.uncorrectedLatency = uncorrectedLatency;
+    }
+
+    /**
+     * @return requests scheduled during the measured window
+     */
+    public long getScheduled() {
+        return scheduled;
+    }
+
+    /**
+     * @return responses with a 2xx or 3xx status
+     */
+    public long getSucceeded() {
+        return succeeded;
+    }
+
+    /**
+     * @return responses with a 4xx or 5xx status
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    /**
+     * @return requests that got no response because the write failed, the stream was reset or the connection
+     * was lost
+     */
+    public long getErrored() {
+        return errored;
+    }
+
+    /**
+     * @return requests that got no response within the response timeout
+     */
+    public long getTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * @return completed requests per second over the measured window
+     */
+    public double getThroughput() {
+        return (succeeded + failed) * 1e9 / durationNanos;
+    }
+
+    public H2LatencyHistogram getCorrectedLatency() {
+        return correctedLatency;
+    }
+
+    public H2LatencyHistogram getUncorrectedLatency() {
+        return uncorrectedLatency;
+    }
+
+    public String toText() {
+        double seconds = durationNanos / 1e9;
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.ROOT, "finished in %.2fs, %.2f req/s, %.2f MB/s%n", seconds,
+                getThroughput(), responseBytes / seconds / (1024 * 1024)));
+        out.append(String.format(Locale.ROOT,
+                "requests: %d scheduled, %d succeeded, %d failed, %d errored, %d timeout%n",
+                scheduled, succeeded, failed, errored, timedOut));
+        out.append(String.format(Locale.ROOT, "status codes: %d 1xx, %d 2xx, %d 3xx, %d 4xx, %d 5xx%n",
+                statusClasses[0], statusClasses[1], statusClasses[2], statusClasses[3], statusClasses[4]));
+        out.append(String.format(Locale.ROOT, "%-22s%10s", "latency (ms)", "mean"));
+        for (double percentile : PERCENTILES) {
+            out.append(String.format(Locale.ROOT, "%10s", "p" + formatPercentile(percentile)));
+        }
+        out.append(String.format(Locale.ROOT, "%10s%n", "max"));
+        appendLatencyRow(out, "corrected", correctedLatency);
+        appendLatencyRow(out, "uncorrected", uncorrectedLatency);
+        return out.toString();
+    }
+
+    public JSONObject toJson() {
+        JSONObject statuses = new JSONObject();
+        for (int i = 0; i < statusClasses.length; i++) {
+            statuses.put((i + 1) + "xx", statusClasses[i]);
+        }
+        return new JSONObject()
+                .put("durationSeconds", durationNanos / 1e9)
+                .put("requestsPerSecond", getThroughput())
+                .put("responseBytes", responseBytes)
+                .put("scheduled", scheduled)
+                .put("succeeded", succeeded)
+                .put("failed", failed)
+                .put("errored", errored)
+                .put("timedOut", timedOut)
+                .put("statusCodes", statuses)
+                .put("correctedLatencyMs", latencyJson(correctedLatency))
+                .put("uncorrectedLatencyMs", latencyJson(uncorrectedLatency));
+    }
+
+    @Override
+    public String toString() {
+        return toText();
+    }
+
+    private static void appendLatencyRow(StringBuilder out, String name, H2LatencyHistogram histogram) {
+        out.append(String.format(Locale.ROOT, "%-22s%10.3f", name, mean(histogram)));
+        for (double percentile : PERCENTILES) {
+            out.append(String.format(Locale.ROOT, "%10.3f", millis(valueAtPercentile(histogram, percentile))));
+        }
+        out.append(String.format(Locale.ROOT, "%10.3f%n", millis(histogram.getMaxMicros())));
+    }
+
+    private static JSONObject latencyJson(H2LatencyHistogram histogram) {
+        JSONObject latency = new JSONObject()
+                .put("count", histogram.getCount())
+                .put("mean", mean(histogram))
+                .put("max", millis(histogram.getMaxMicros()));
+        for (double percentile : PERCENTILES) {
+            latency.put("p" + formatPercentile(percentile), millis(valueAtPercentile(histogram, percentile)));
+        }
+        return latency;
+    }
+
+    /**
+     * Bucket upper bounds can overshoot the largest recorded value, so high percentiles are capped at the max.
+     */
+    private static long valueAtPercentile(H2LatencyHistogram histogram, double percentile) {
+        return Math.min(histogram.getValueAtQuantile(percentile / 100), histogram.getMaxMicros());
+    }
+
+    private static double mean(H2LatencyHistogram histogram) {
+        long count = histogram.getCount();
+        return count == 0 ? 0 : millis(histogram.getSumMicros()) / count;
+    }
+
+    private static double millis(long micros) {
+        return micros / (double) TimeUnit.MILLISECONDS.toMicros(1);
+    }
+
+    private static String formatPercentile(double percentile) {
+        return percentile == (long) percentile ? Long.toString((long) percentile) : Double.toString(percentile);
+    }
+}
@@ -0,0 +1,18 @@
+package netty.http2.client;
+
+/**
+ * What {@link Http2Client} does with a request when the connection's pending-request queue is full.
+ */
+public enum H2OverflowPolicy {
+    /**
+     * Fail at once with a {@link java.util.concurrent.RejectedExecutionException}: {@code execute} returns a failed
+     * future and {@code sendRequest} throws.
+     */
+    REJECT,
+    /**
+     * Wait for room in the queue. {@code execute} returns at once and its request waits on the event loop, counted
+     * against its response timeout, unless as many requests as the queue holds are already waiting, in which case it
+     * is rejected; {@code sendRequest} blocks the caller for up to the response timeout.
+     */
+    WAIT
+}
@@ -1,8 +1,12 @@
 package netty.http2.client;
 
+import io.netty.handler.codec.http.HttpHeaders;
+
 public class H2ResponseFromServer {
     private int responseStatus;
+    private HttpHeaders responseHeaders;
     private String responseMsg;
+    private int contentLength;
 
     public int getResponseStatus() {
         return responseStatus;
@@ -12,6 +16,14 @@ public class H2ResponseFromServer {
         this.responseStatus = responseStatus;
     }
 
+    public HttpHeaders getResponseHeaders() {
+        return responseHeaders;
+    }
+
+    public void setResponseHeaders(HttpHeaders responseHeaders) {
+        this.responseHeaders = responseHeaders;
+    }
+
     public String getResponseMsg() {
         return responseMsg;
     }
@@ -19,4 +31,15 @@ public class H2ResponseFromServer {
     public void setResponseMsg(String responseMsg) {
         this.responseMsg = responseMsg;
     }
+
+    /**
+     * @return size of the body as received, in bytes, whatever its encoding
+     */
+    public int getContentLength() {
+        return contentLength;
+    }
+
+    public void setContentLength(int contentLength) {
+        this.contentLength = contentLength;
+    }
 }
@@ -1,11 +1,8 @@
 package netty.http2.client;
 
 import io.netty.bootstrap.Bootstrap;
-import io.netty.channel.Channel;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpScheme;
@@ -16,118 +13,467 @@ import io.netty.handler.ssl.ApplicationProtocolConfig.Protocol;
 import io.netty.handler.ssl.ApplicationProtocolConfig.SelectedListenerFailureBehavior;
 import io.netty.handler.ssl.ApplicationProtocolConfig.SelectorFailureBehavior;
 import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import io.netty.util.NettyRuntime;
+import io.netty.util.concurrent.ScheduledFuture;
+import netty.http2.transport.H2TlsProvider;
+import netty.http2.transport.H2Transport;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import javax.net.ssl.SSLException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 
+/**
+ * HTTP/2 client holding a pool of connections to one endpoint. Each request goes to the connection with the fewest
+ * streams in flight that still has room under the server's MAX_CONCURRENT_STREAMS. The pool opens
+ * {@code minConnections} up front, grows towards {@code maxConnections} while connections are more than half
+ * full, closes connections above the minimum once they have been idle for the idle timeout, and replaces
+ * connections that receive GOAWAY or close, backing off while the replacements keep failing. Requests that find no
+ * free stream wait in a bounded per-connection queue; see {@link H2OverflowPolicy}.
+ */
 public final class Http2Client {
 
     private static final Logger logger = LogManager.getLogger(Http2Client.class);
+    // One context per engine for the whole JVM: its session cache, keyed by host and port, is what lets new
+    // connections and new clients to an endpoint resume instead of paying for a full handshake.
+    private static final ConcurrentMap<H2TlsProvider, SslContext> sslContexts = new ConcurrentHashMap<>();
+    // Replacing a connection that failed or closed soon after connecting is delayed, doubling up to the maximum.
+    private static final long MIN_RECONNECT_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long MAX_RECONNECT_DELAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final long HEALTHY_UPTIME_NANOS = TimeUnit.SECONDS.toNanos(1);
     private final String serverIp;
     private final int serverPort;
     private final boolean sslSupport;
+    private final H2TlsProvider tlsProvider;
+    private final boolean priorKnowledge;
     private final int responseTimeout;
-    private final HttpResponseHandler responseHandler;
-    private Channel channel;
-    private AtomicInteger streamId;
+    private final Supplier<? extends HttpResponseHandler> responseHandlerFactory;
+    private final H2Transport transport;
+    private final int eventLoopThreads;
+    private final int minConnections;
+    private final int maxConnections;
+    private final int maxStreamsPerConnection;
+    private final long idleTimeoutNanos;
+    private final int maxPendingRequests;
+    private final H2OverflowPolicy overflowPolicy;
+    private final List<H2ClientConnection> connections = new CopyOnWriteArrayList<>();
+    // Connects in progress; requests that find no usable connection wait on these rather than open their own.
+    private final List<CompletableFuture<H2ClientConnection>> opening = new CopyOnWriteArrayList<>();
+    private final AtomicInteger reconnectFailures = new AtomicInteger();
+    private final AtomicBoolean reconnectScheduled = new AtomicBoolean();
+    private EventLoopGroup workerGroup;
+    private Bootstrap bootstrap;
+    private SslContext sslCtx;
+    private ScheduledFuture<?> idleCheck;
+    private volatile boolean closed;
 
     public Http2Client(Builder builder) {
         this.serverIp = builder.serverIp;
         this.serverPort = builder.serverPort;
         this.sslSupport = builder.sslSupport;
+        this.tlsProvider = builder.tlsProvider;
+        this.priorKnowledge = builder.priorKnowledge;
         this.responseTimeout = builder.responseTimeout;
-        this.responseHandler = builder.responseHandler;
-        this.channel = null;
-        this.streamId = new AtomicInteger(3);
+        this.responseHandlerFactory = builder.responseHandlerFactory;
+        this.transport = builder.transport;
+        this.eventLoopThreads = builder.eventLoopThreads;
+        this.minConnections = builder.minConnections;
+        this.maxConnections = builder.maxConnections;
+        this.maxStreamsPerConnection = builder.maxStreamsPerConnection;
+        this.idleTimeoutNanos = builder.idleTimeoutNanos;
+        this.maxPendingRequests = builder.maxPendingRequests;
+        this.overflowPolicy = builder.overflowPolicy;
     }
 
     public Http2Client initClient() throws Exception {
         // Configure SSL.
-        final SslContext sslCtx = getSslCtx();
+        sslCtx = getSslCtx();
 
-        EventLoopGroup workerGroup = new NioEventLoopGroup();
-        Http2ClientInitializer initializer = new Http2ClientInitializer(sslCtx, Integer.MAX_VALUE, responseHandler);
+        H2Transport resolvedTransport = transport.resolve();
+        int threads = eventLoopThreads > 0 ? eventLoopThreads
+                : Math.min(maxConnections, NettyRuntime.availableProcessors());
+        workerGroup = resolvedTransport.newEventLoopGroup(threads, "h2-client");
 
         // Configure the client.
-        Bootstrap b = new Bootstrap();
-        b.group(workerGroup);
-        b.channel(NioSocketChannel.class);
-        b.option(ChannelOption.SO_KEEPALIVE, true);
-        b.remoteAddress(serverIp, serverPort);
-        b.handler(initializer);
+        bootstrap = new Bootstrap();
+        bootstrap.group(workerGroup);
+        bootstrap.channel(resolvedTransport.socketChannelClass());
+        bootstrap.option(ChannelOption.SO_KEEPALIVE, true);
+        bootstrap.remoteAddress(serverIp, serverPort);
 
-        // Start the client.
-        channel = b.connect().syncUninterruptibly().channel();
-        logger.warn("Connected to [" + serverIp + ':' + serverPort + ']');
-
-        // Wait for the HTTP/2 upgrade to occur.
-        Http2SettingsHandler http2SettingsHandler = initializer.settingsHandler();
-        http2SettingsHandler.awaitSettings(responseTimeout, TimeUnit.SECONDS);
+        // Open the minimum number of connections and wait for each one's HTTP/2 upgrade or preface.
+        CompletableFuture<?>[] warmup = new CompletableFuture<?>[minConnections];
+        for (int i = 0; i < minConnections; i++) {
+            warmup[i] = openConnection();
+        }
+        try {
+            CompletableFuture.allOf(warmup).join();
+        } catch (CompletionException e) {
+            close();
+            throw new IllegalStateException("Cannot connect to [" + serverIp + ':' + serverPort + ']', e.getCause());
+        }
+        logger.warn("Connected to [" + serverIp + ':' + serverPort + "] using the " + resolvedTransport
+                + " transport with " + minConnections + " connection(s)");
 
+        if (maxConnections > minConnections) {
+            idleCheck = workerGroup.scheduleWithFixedDelay(this::closeIdleConnections, idleTimeoutNanos,
+                    idleTimeoutNanos, TimeUnit.NANOSECONDS);
+        }
         return this;
     }
 
 
+    /**
+     * Writes the request on the least loaded connection without flushing it, or queues it until a stream is free.
+     * Waits for a connection if none is usable, and may wait for queue room, so never call this from an event
+     * loop.
+     *
+     * @throws java.util.concurrent.RejectedExecutionException if the connection's queue is full
+     */
     public void sendRequest(FullHttpRequest request) {
-        HttpScheme scheme = sslSupport ? HttpScheme.HTTPS : HttpScheme.HTTP;
-        logger.warn("Sending request with StreamId= " + streamId.get());
+        addRequestHeaders(request);
+
+        H2ClientConnection connection = select();
+        if (connection == null) {
+            connection = awaitConnection();
+        }
+        connection.send(request, TimeUnit.SECONDS.toNanos(responseTimeout));
+    }
+
+    /**
+     * Sends the request on the least loaded connection, within the default response timeout.
+     *
+     * @see #execute(FullHttpRequest, long, TimeUnit)
+     */
+    public CompletableFuture<H2ResponseFromServer> execute(FullHttpRequest request) {
+        return execute(request, responseTimeout, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Sends and flushes the request on the least loaded connection without blocking. The future completes on the
+     * connection's event loop once the response to this request arrives, so callbacks must not block. It fails if
+     * the stream is reset, the connection closes or no response arrives within {@code timeout}; a timed out
+     * stream is cancelled with RST_STREAM. Requests wait in the connection's queue while the server's
+     * MAX_CONCURRENT_STREAMS is reached or the channel is not writable, and that wait counts against
+     * {@code timeout}. If the queue is full, the future fails at once under {@link H2OverflowPolicy#REJECT}.
+     */
+    public CompletableFuture<H2ResponseFromServer> execute(FullHttpRequest request, long timeout, TimeUnit unit) {
+        addRequestHeaders(request);
+        long timeoutNanos = unit.toNanos(timeout);
+
+        H2ClientConnection connection = select();
+        if (connection != null) {
+            return connection.execute(request, timeoutNanos);
+        }
+        CompletableFuture<H2ResponseFromServer> response = new CompletableFuture<>();
+        connectionFuture().whenComplete((opened, cause) -> {
+            if (cause != null) {
+                request.release();
+                response.completeExceptionally(cause);
+            } else {
+                opened.execute(request, timeoutNanos).whenComplete((result, failure) -> {
+                    if (failure != null) {
+                        response.completeExceptionally(failure);
+                    } else {
+                        response.complete(result);
+                    }
+                });
+            }
+        });
+        return response;
+    }
+
+    /**
+     * Flushes requests written by {@link #sendRequest(FullHttpRequest)} without waiting for their responses.
+     */
+    public void flush() {
+        for (H2ClientConnection connection : connections) {
+            connection.flush();
+        }
+    }
+
+    public void flushAndAwaitResponses() {
+        flush();
+        for (H2ClientConnection connection : connections) {
+            connection.awaitQueuedWrites(responseTimeout, TimeUnit.SECONDS);
+            connection.responseHandler().awaitResponses(responseTimeout, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * @return open connections, including ones draining after GOAWAY
+     */
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+
+    /**
+     * Closes every connection and stops the client's event loops.
+     */
+    public void close() {
+        closed = true;
+        if (idleCheck != null) {
+            idleCheck.cancel(false);
+        }
+        for (H2ClientConnection connection : connections) {
+            connection.close().syncUninterruptibly();
+        }
+        if (workerGroup != null) {
+            workerGroup.shutdownGracefully();
+        }
+    }
+
+    /**
+     * @return the least loaded usable connection, or {@code null} if there is none
+     */
+    private H2ClientConnection select() {
+        H2ClientConnection best = null;
+        H2ClientConnection leastLoaded = null;
+        int bestOutstanding = Integer.MAX_VALUE;
+        int leastOutstanding = Integer.MAX_VALUE;
+        int bestCapacity = 0;
+        for (H2ClientConnection connection : connections) {
+            if (!connection.isUsable()) {
+                continue;
+            }
+            int outstanding = connection.outstanding();
+            int capacity = capacity(connection);
+            if (outstanding < capacity && outstanding < bestOutstanding) {
+                best = connection;
+                bestOutstanding = outstanding;
+                bestCapacity = capacity;
+            }
+            if (outstanding < leastOutstanding) {
+                leastLoaded = connection;
+                leastOutstanding = outstanding;
+            }
+        }
 
+        if (leastLoaded == null) {
+            return null;
+        }
+        if ((best == null || bestOutstanding >= bestCapacity / 2)
+                && connections.size() + opening.size() < maxConnections) {
+            openConnection();
+        }
+        // With every connection full the request still goes out; the server may refuse the stream.
+        return best != null ? best : leastLoaded;
+    }
+
+    private void addRequestHeaders(FullHttpRequest request) {
+        HttpScheme scheme = sslSupport ? HttpScheme.HTTPS : HttpScheme.HTTP;
         request.headers().add(HttpHeaderNames.HOST, serverIp + ":" + serverPort);
         request.headers().add(HttpConversionUtil.ExtensionHeaderNames.SCHEME.text(), scheme.name());
+    }
 
-        responseHandler.put(streamId.getAndAdd(2), channel.write(request), channel.newPromise());
-//        channel.flush();
-//        responseHandler.awaitResponses(responseTimeout, TimeUnit.SECONDS);
+    /**
+     * @return a connection for a request that found none usable, e.g. while the first one is still connecting or
+     * after every connection got GOAWAY: a connect in progress once the pool is at maxConnections, a new one
+     * otherwise. Only goes past maxConnections when nothing is connecting, so a burst after a server restart
+     * shares a handful of connects instead of opening one each.
+     */
+    private CompletableFuture<H2ClientConnection> connectionFuture() {
+        synchronized (opening) {
+            if (connections.size() + opening.size() >= maxConnections) {
+                // The oldest connect is the likeliest to finish first.
+                Iterator<CompletableFuture<H2ClientConnection>> connecting = opening.iterator();
+                if (connecting.hasNext()) {
+                    return connecting.next();
+                }
+            }
+            return openConnection();
+        }
+    }
 
+    private H2ClientConnection awaitConnection() {
+        try {
+            return connectionFuture().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted connecting to [" + serverIp + ':' + serverPort + ']');
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Cannot connect to [" + serverIp + ':' + serverPort + ']', e.getCause());
+        }
     }
 
-    public void flushAndAwaitResponses() {
-        channel.flush();
-        responseHandler.awaitResponses(responseTimeout, TimeUnit.SECONDS);
+    private int capacity(H2ClientConnection connection) {
+        return Math.min(connection.maxConcurrentStreams(), maxStreamsPerConnection);
+    }
+
+    private CompletableFuture<H2ClientConnection> openConnection() {
+        HttpResponseHandler responseHandler;
+        try {
+            responseHandler = responseHandlerFactory.get();
+        } catch (RuntimeException e) {
+            logger.warn("Cannot connect to [" + serverIp + ':' + serverPort + ']', e);
+            CompletableFuture<H2ClientConnection> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+        H2ClientConnection connection = new H2ClientConnection(this, sslCtx, serverIp, serverPort, priorKnowledge,
+                responseHandler, maxPendingRequests, overflowPolicy);
+        CompletableFuture<H2ClientConnection> ready = connection.connect(bootstrap, responseTimeout);
+        opening.add(ready);
+        // Registered after the add, so this runs after it even if the connect already failed.
+        return ready.whenComplete((connected, cause) -> {
+            opening.remove(ready);
+            if (cause != null) {
+                reconnectFailures.incrementAndGet();
+                logger.warn("Cannot connect to [" + serverIp + ':' + serverPort + ']', cause);
+            } else if (closed) {
+                connected.close();
+            } else {
+                connections.add(connected);
+                if (!connected.isUsable()) {
+                    // Closed or sent GOAWAY before it made it into the pool.
+                    connections.remove(connected);
+                }
+            }
+        });
     }
 
+    void connectionDraining(H2ClientConnection connection) {
+        logger.warn("Connection to [" + serverIp + ':' + serverPort + "] received GOAWAY");
+        replaceIfBelowMinimum();
+    }
+
+    void connectionClosed(H2ClientConnection connection) {
+        connections.remove(connection);
+        long uptime = connection.uptimeNanos(System.nanoTime());
+        if (uptime >= HEALTHY_UPTIME_NANOS) {
+            reconnectFailures.set(0);
+        } else if (uptime > 0) {
+            // Accepted and then dropped right away, e.g. a server refusing new connections; failed connects are
+            // counted when they fail.
+            reconnectFailures.incrementAndGet();
+        }
+        replaceIfBelowMinimum();
+    }
+
+    /**
+     * Opens a connection if the pool is below the minimum: at once after a healthy connection went away, after a
+     * growing delay while replacements keep failing.
+     */
+    private void replaceIfBelowMinimum() {
+        if (!isBelowMinimum()) {
+            return;
+        }
+        int failures = reconnectFailures.get();
+        if (failures == 0) {
+            openConnection();
+        } else if (reconnectScheduled.compareAndSet(false, true)) {
+            long delay = Math.min(MAX_RECONNECT_DELAY_NANOS, MIN_RECONNECT_DELAY_NANOS << Math.min(failures - 1, 20));
+            logger.warn("Reconnecting to [" + serverIp + ':' + serverPort + "] in "
+                    + TimeUnit.NANOSECONDS.toMillis(delay) + " ms");
+            workerGroup.schedule(() -> {
+                reconnectScheduled.set(false);
+                if (isBelowMinimum()) {
+                    openConnection();
+                }
+            }, delay, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private boolean isBelowMinimum() {
+        return !closed && usableConnections() + opening.size() < minConnections;
+    }
+
+    private int usableConnections() {
+        int usable = 0;
+        for (H2ClientConnection connection : connections) {
+            if (connection.isUsable()) {
+                usable++;
+            }
+        }
+        return usable;
+    }
+
+    private void closeIdleConnections() {
+        long now = System.nanoTime();
+        int usable = usableConnections();
+        for (H2ClientConnection connection : connections) {
+            if (usable <= minConnections) {
+                return;
+            }
+            if (connection.isUsable() && connection.idleNanos(now) >= idleTimeoutNanos) {
+                connection.retire();
+                usable--;
+            }
+        }
+    }
 
     private SslContext getSslCtx() {
-        SslContext sslCtx = null;
+        if (!sslSupport) {
+            return null;
+        }
+        return sslContexts.computeIfAbsent(tlsProvider.resolve(), Http2Client::newSslCtx);
+    }
+
+    private static SslContext newSslCtx(H2TlsProvider provider) {
         try {
-            if (sslSupport) {
-                SslProvider provider = OpenSsl.isAlpnSupported() ? SslProvider.OPENSSL : SslProvider.JDK;
-                sslCtx = SslContextBuilder.forClient()
-                        .sslProvider(provider)
-                        /* NOTE: the cipher filter may not include all ciphers required by the HTTP/2 specification.
-                         * Please refer to the HTTP/2 specification for cipher requirements. */
-                        .ciphers(Http2SecurityUtil.CIPHERS, SupportedCipherSuiteFilter.INSTANCE)
-                        .trustManager(InsecureTrustManagerFactory.INSTANCE)
-                        .applicationProtocolConfig(new ApplicationProtocolConfig(
-                                Protocol.ALPN,
-                                // NO_ADVERTISE is currently the only mode supported by both OpenSsl and JDK providers.
-                                SelectorFailureBehavior.NO_ADVERTISE,
-                                // ACCEPT is currently the only mode supported by both OpenSsl and JDK providers.
-                                SelectedListenerFailureBehavior.ACCEPT,
-                                ApplicationProtocolNames.HTTP_2,
-                                ApplicationProtocolNames.HTTP_1_1))
-                        .build();
-            }
+            return SslContextBuilder.forClient()
+                    .sslProvider(provider.sslProvider())
+                    /* NOTE: the cipher filter may not include all ciphers required by the HTTP/2 specification.
+                     * Please refer to the HTTP/2 specification for cipher requirements. */
+                    .ciphers(Http2SecurityUtil.CIPHERS, SupportedCipherSuiteFilter.INSTANCE)
+                    .trustManager(InsecureTrustManagerFactory.INSTANCE)
+                    .applicationProtocolConfig(new ApplicationProtocolConfig(
+                            Protocol.ALPN,
+                            // NO_ADVERTISE is currently the only mode supported by both OpenSsl and JDK providers.
+                            SelectorFailureBehavior.NO_ADVERTISE,
+                            // ACCEPT is currently the only mode supported by both OpenSsl and JDK providers.
+                            SelectedListenerFailureBehavior.ACCEPT,
+                            ApplicationProtocolNames.HTTP_2,
+                            ApplicationProtocolNames.HTTP_1_1))
+                    .build();
         } catch (SSLException e) {
-            e.printStackTrace();
+            // Returning no context would silently downgrade the client to cleartext.
+            throw new IllegalStateException("Cannot create the " + provider + " TLS context", e);
         }
-        return sslCtx;
     }
 
     public static class Builder {
         private String serverIp;
         private int serverPort;
         private boolean sslSupport;
+        private H2TlsProvider tlsProvider;
+        private boolean priorKnowledge;
         private int responseTimeout;
         private HttpResponseHandler responseHandler;
+        private Supplier<? extends HttpResponseHandler> responseHandlerFactory;
+        private H2Transport transport;
+        private int eventLoopThreads;
+        private int minConnections;
+        private int maxConnections;
+        private int maxStreamsPerConnection;
+        private long idleTimeoutNanos;
+        private int maxPendingRequests;
+        private H2OverflowPolicy overflowPolicy;
 
         private Builder() {
             sslSupport = false;
+            tlsProvider = H2TlsProvider.JDK;
             responseTimeout = 5;
+            transport = H2Transport.AUTO;
+            minConnections = 1;
+            maxConnections = 1;
+            maxStreamsPerConnection = 100;
+            idleTimeoutNanos = TimeUnit.MINUTES.toNanos(1);
+            maxPendingRequests = 1024;
+            overflowPolicy = H2OverflowPolicy.WAIT;
         }
 
         public static Builder newInstance() {
@@ -136,13 +482,11 @@ public final class Http2Client {
 
         public Builder setServerIp(String serverIp) {
             this.serverIp = serverIp;
-            ClientUtil.setServerIp(serverIp);
             return this;
         }
 
         public Builder setServerPort(int serverPort) {
             this.serverPort = serverPort;
-            ClientUtil.setServerPort(serverPort);
             return this;
         }
 
@@ -151,17 +495,144 @@ public final class Http2Client {
             return this;
         }
 
+        /**
+         * Selects the TLS engine. Defaults to {@link H2TlsProvider#JDK}, the only engine whose client side resumes
+         * sessions with this Netty version: a resumed handshake spares both peers the certificate and key
+         * exchange work, which outweighs the cheaper full handshakes of OpenSSL when connections churn. Prefer
+         * {@link H2TlsProvider#AUTO} for long-lived connections carrying a lot of traffic.
+         */
+        public Builder setTlsProvider(H2TlsProvider tlsProvider) {
+            this.tlsProvider = tlsProvider;
+            return this;
+        }
+
+        /**
+         * Without TLS, speak HTTP/2 from the first byte instead of upgrading from HTTP/1.1. Saves a round trip and
+         * the upgrade request on every new connection, but only works against servers known to accept a bare
+         * connection preface.
+         */
+        public Builder setPriorKnowledge(boolean priorKnowledge) {
+            this.priorKnowledge = priorKnowledge;
+            return this;
+        }
+
         public Builder setResponseTimeout(int responseTimeout) {
             this.responseTimeout = responseTimeout;
             return this;
         }
 
+        /**
+         * Sets the handler of a single-connection client. A handler instance can only join one channel pipeline, so
+         * it serves the first connection only: once that connection closes or receives GOAWAY the client cannot
+         * replace it. Use {@link #setResponseHandlerFactory(Supplier)} for a client that reconnects or pools.
+         */
         public Builder setResponseHandler(HttpResponseHandler responseHandler) {
             this.responseHandler = responseHandler;
             return this;
         }
 
+        /**
+         * @param responseHandlerFactory creates the response handler of each new connection
+         */
+        public Builder setResponseHandlerFactory(Supplier<? extends HttpResponseHandler> responseHandlerFactory) {
+            this.responseHandlerFactory = responseHandlerFactory;
+            return this;
+        }
+
+        /**
+         * Selects the socket transport. Defaults to {@link H2Transport#AUTO}, which uses epoll when available
+         * and NIO otherwise.
+         */
+        public Builder setTransport(H2Transport transport) {
+            this.transport = transport;
+            return this;
+        }
+
+        /**
+         * @param eventLoopThreads I/O threads; a single connection only ever uses one. Defaults to one per
+         *                         connection, up to the number of cores.
+         */
+        public Builder setEventLoopThreads(int eventLoopThreads) {
+            this.eventLoopThreads = eventLoopThreads;
+            return this;
+        }
+
+        /**
+         * @param minConnections connections opened by {@link Http2Client#initClient()} and kept open while idle
+         */
+        public Builder setMinConnections(int minConnections) {
+            this.minConnections = minConnections;
+            return this;
+        }
+
+        public Builder setMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+            return this;
+        }
+
+        /**
+         * @param maxStreamsPerConnection streams a connection takes before the pool prefers or opens another one,
+         *                                when the server allows more than this
+         */
+        public Builder setMaxStreamsPerConnection(int maxStreamsPerConnection) {
+            this.maxStreamsPerConnection = maxStreamsPerConnection;
+            return this;
+        }
+
+        /**
+         * Connections above the minimum are closed after being idle this long.
+         */
+        public Builder setIdleTimeout(long idleTimeout, TimeUnit unit) {
+            this.idleTimeoutNanos = unit.toNanos(idleTimeout);
+            return this;
+        }
+
+        /**
+         * @param maxPendingRequests requests a connection holds while they wait for a stream under the server's
+         *                           MAX_CONCURRENT_STREAMS or for the channel to become writable. Under
+         *                           {@link H2OverflowPolicy#WAIT} as many again may wait for room in that queue;
+         *                           requests beyond both are rejected.
+         */
+        public Builder setMaxPendingRequests(int maxPendingRequests) {
+            this.maxPendingRequests = maxPendingRequests;
+            return this;
+        }
+
+        /**
+         * Decides what happens to a request when its connection already holds {@code maxPendingRequests}. Defaults
+         * to {@link H2OverflowPolicy#WAIT}.
+         */
+        public Builder setOverflowPolicy(H2OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
         public Http2Client build() {
+            if (minConnections < 0 || maxConnections < Math.max(1, minConnections)) {
+                throw new IllegalArgumentException("Invalid connection bounds: min " + minConnections + ", max "
+                        + maxConnections);
+            }
+            if (responseHandlerFactory == null) {
+                if (responseHandler == null) {
+                    responseHandlerFactory = HttpResponseHandler::new;
+                } else if (maxConnections == 1) {
+                    // Stream ids restart on every connection, so even a @Sharable handler cannot tell the
+                    // responses of two connections apart, and netty refuses to add a handler that is not
+                    // @Sharable twice. Fail replacement connections up front instead of in the pipeline.
+                    HttpResponseHandler handler = responseHandler;
+                    AtomicBoolean taken = new AtomicBoolean();
+                    responseHandlerFactory = () -> {
+                        if (taken.getAndSet(true)) {
+                            throw new IllegalStateException("The response handler serves the first connection "
+                                    + "only; use setResponseHandlerFactory to reconnect");
+                        }
+                        return handler;
+                    };
+                } else {
+                    throw new IllegalArgumentException("A response handler instance serves one connection; use "
+                            + "setResponseHandlerFactory with more than one connection");
+                }
+            }
             return new Http2Client(this);
         }
 
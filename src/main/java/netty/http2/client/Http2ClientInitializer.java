@@ -38,20 +38,40 @@ public class Http2ClientInitializer extends ChannelInitializer<SocketChannel> {
     private static final Http2FrameLogger logger = new Http2FrameLogger(INFO, Http2ClientInitializer.class);
 
     private final SslContext sslCtx;
+    private final String serverIp;
+    private final int serverPort;
     private final int maxContentLength;
     private HttpToHttp2ConnectionHandler connectionHandler;
     private Http2SettingsHandler settingsHandler;
     private HttpResponseHandler responseHandler;
+    private final Http2Connection.Listener connectionListener;
+    private final boolean priorKnowledge;
 
-    public Http2ClientInitializer(SslContext sslCtx, int maxContentLength, HttpResponseHandler responseHandler) {
+    /**
+     * @param serverIp           host name sent in the TLS SNI extension
+     * @param serverPort         port of the peer, for the TLS session cache
+     * @param connectionListener notified of stream and GOAWAY events on the connection, or {@code null}
+     * @param priorKnowledge     without TLS, start with the HTTP/2 connection preface instead of an HTTP/1.1
+     *                           upgrade request
+     */
+    public Http2ClientInitializer(SslContext sslCtx, String serverIp, int serverPort, int maxContentLength,
+                                  HttpResponseHandler responseHandler, Http2Connection.Listener connectionListener,
+                                  boolean priorKnowledge) {
         this.sslCtx = sslCtx;
+        this.priorKnowledge = priorKnowledge;
+        this.serverIp = serverIp;
+        this.serverPort = serverPort;
         this.maxContentLength = maxContentLength;
         this.responseHandler = responseHandler;
+        this.connectionListener = connectionListener;
     }
 
     @Override
     public void initChannel(SocketChannel ch) throws Exception {
         final Http2Connection connection = new DefaultHttp2Connection(false);
+        if (connectionListener != null) {
+            connection.addListener(connectionListener);
+        }
         connectionHandler = new HttpToHttp2ConnectionHandlerBuilder()
                 .frameListener(new DelegatingDecompressorFrameListener(
                         connection,
@@ -66,6 +86,8 @@ public class Http2ClientInitializer extends ChannelInitializer<SocketChannel> {
         settingsHandler = new Http2SettingsHandler(ch.newPromise());
         if (sslCtx != null) {
             configureSsl(ch);
+        } else if (priorKnowledge) {
+            configurePriorKnowledge(ch);
         } else {
             configureClearText(ch);
         }
@@ -79,6 +101,13 @@ public class Http2ClientInitializer extends ChannelInitializer<SocketChannel> {
         return settingsHandler;
     }
 
+    /**
+     * @return the connection handler of the channel most recently initialized
+     */
+    public HttpToHttp2ConnectionHandler connectionHandler() {
+        return connectionHandler;
+    }
+
     protected void configureEndOfPipeline(ChannelPipeline pipeline) {
         pipeline.addLast(settingsHandler, responseHandler);
     }
@@ -89,7 +118,7 @@ public class Http2ClientInitializer extends ChannelInitializer<SocketChannel> {
     private void configureSsl(SocketChannel ch) {
         ChannelPipeline pipeline = ch.pipeline();
         // Specify Host in SSLContext New Handler to add TLS SNI Extension
-        pipeline.addLast(sslCtx.newHandler(ch.alloc(), ClientUtil.getServerIp(), ClientUtil.getServerPort()));
+        pipeline.addLast(sslCtx.newHandler(ch.alloc(), serverIp, serverPort));
         // We must wait for the handshake to finish and the protocol to be negotiated before configuring
         // the HTTP/2 components of the pipeline.
         pipeline.addLast(new ApplicationProtocolNegotiationHandler("") {
@@ -107,6 +136,16 @@ public class Http2ClientInitializer extends ChannelInitializer<SocketChannel> {
         });
     }
 
+    /**
+     * Configure the pipeline for cleartext HTTP/2 with prior knowledge: the connection handler sends the preface and
+     * SETTINGS as soon as the channel is active, saving the upgrade round trip.
+     */
+    private void configurePriorKnowledge(SocketChannel ch) {
+        ChannelPipeline pipeline = ch.pipeline();
+        pipeline.addLast(connectionHandler, new PrefaceFlusher());
+        configureEndOfPipeline(pipeline);
+    }
+
     /**
      * Configure the pipeline for a cleartext upgrade from HTTP to HTTP/2.
      */
@@ -132,6 +171,21 @@ public class Http2ClientInitializer extends ChannelInitializer<SocketChannel> {
         }
     }
 
+    /**
+     * The connection handler writes the preface and SETTINGS on channel active but leaves them unflushed, which
+     * is fine after an upgrade or ALPN, where more writes follow, but would stall a prior knowledge connection
+     * until the first request.
+     */
+    private static final class PrefaceFlusher extends ChannelInboundHandlerAdapter {
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) throws Exception {
+            ctx.flush();
+            ctx.fireChannelActive();
+            ctx.pipeline().remove(this);
+        }
+    }
+
     /**
      * A handler that triggers the cleartext upgrade to HTTP/2 by sending an initial HTTP request.
      */
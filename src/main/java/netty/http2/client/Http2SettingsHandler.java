@@ -1,6 +1,7 @@
 package netty.http2.client;
 
 
+import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPromise;
 import io.netty.channel.SimpleChannelInboundHandler;
@@ -40,6 +41,13 @@ public class Http2SettingsHandler extends SimpleChannelInboundHandler<Http2Setti
         }
     }
 
+    /**
+     * @return a future completed by the first settings, for callers that must not block
+     */
+    public ChannelFuture settingsFuture() {
+        return promise;
+    }
+
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, Http2Settings msg) throws Exception {
         promise.setSuccess();
@@ -7,14 +7,19 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPromise;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http2.Http2Exception;
 import io.netty.handler.codec.http2.HttpConversionUtil;
 import io.netty.util.CharsetUtil;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+import io.netty.util.collection.IntObjectMap.PrimitiveEntry;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.nio.channels.ClosedChannelException;
 import java.util.AbstractMap.SimpleEntry;
-import java.util.Iterator;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
@@ -26,13 +31,9 @@ public class HttpResponseHandler extends SimpleChannelInboundHandler<FullHttpRes
     private static final Logger logger = LogManager.getLogger(HttpResponseHandler.class);
     static AtomicLong counter = new AtomicLong();
     static long startTime = System.currentTimeMillis();
-    private final Map<Integer, Entry<ChannelFuture, ChannelPromise>> streamidPromiseMap;
-
-    public HttpResponseHandler() {
-        // Use a concurrent map because we add and iterate from the main thread (just for the purposes of the example),
-        // but Netty also does a get on the map when messages are received in a EventLoop thread.
-        streamidPromiseMap = ClientUtil.getStreamidPromiseMap();
-    }
+    // Requests in flight on this handler's connection, keyed by the stream ids the connection allocated. Written
+    // on the event loop and read by threads waiting in awaitResponses, hence the lock.
+    private final IntObjectMap<Entry<ChannelFuture, ChannelPromise>> streamidPromiseMap = new IntObjectHashMap<>();
 
     /**
      * Create an association between an anticipated response stream id and a {@link io.netty.channel.ChannelPromise}
@@ -44,7 +45,10 @@ public class HttpResponseHandler extends SimpleChannelInboundHandler<FullHttpRes
      * @see HttpResponseHandler#awaitResponses(long, TimeUnit)
      */
     public Entry<ChannelFuture, ChannelPromise> put(int streamId, ChannelFuture writeFuture, ChannelPromise promise) {
-        return streamidPromiseMap.put(streamId, new SimpleEntry<ChannelFuture, ChannelPromise>(writeFuture, promise));
+        synchronized (streamidPromiseMap) {
+            return streamidPromiseMap.put(streamId,
+                    new SimpleEntry<ChannelFuture, ChannelPromise>(writeFuture, promise));
+        }
     }
 
     /**
@@ -55,16 +59,21 @@ public class HttpResponseHandler extends SimpleChannelInboundHandler<FullHttpRes
      * @see HttpResponseHandler#put(int, io.netty.channel.ChannelFuture, io.netty.channel.ChannelPromise)
      */
     public void awaitResponses(long timeout, TimeUnit unit) {
-        logger.warn("StreamId Map contents: " + streamidPromiseMap.keySet());
+        List<Entry<Integer, Entry<ChannelFuture, ChannelPromise>>> pending = new ArrayList<>();
+        synchronized (streamidPromiseMap) {
+            for (PrimitiveEntry<Entry<ChannelFuture, ChannelPromise>> entry : streamidPromiseMap.entries()) {
+                pending.add(new SimpleEntry<>(entry.key(), entry.value()));
+            }
+        }
+        logger.warn("StreamId Map contents: " + streamIds(pending));
 
-        Iterator<Entry<Integer, Entry<ChannelFuture, ChannelPromise>>> itr = streamidPromiseMap.entrySet().iterator();
-        while (itr.hasNext()) {
-            Entry<Integer, Entry<ChannelFuture, ChannelPromise>> entry = itr.next();
+        for (Entry<Integer, Entry<ChannelFuture, ChannelPromise>> entry : pending) {
             ChannelFuture writeFuture = entry.getValue().getKey();
             if (!writeFuture.awaitUninterruptibly(timeout, unit)) {
                 throw new IllegalStateException("Timed out waiting to write for stream id " + entry.getKey());
             }
             if (!writeFuture.isSuccess()) {
+                removeStream(entry.getKey());
                 throw new RuntimeException(writeFuture.cause());
             }
             ChannelPromise promise = entry.getValue().getValue();
@@ -74,7 +83,36 @@ public class HttpResponseHandler extends SimpleChannelInboundHandler<FullHttpRes
             if (!promise.isSuccess()) {
                 throw new RuntimeException(promise.cause());
             }
-            itr.remove();
+        }
+    }
+
+    /**
+     * @return whether a request on {@code streamId} is still waiting for its response
+     */
+    protected boolean isPending(int streamId) {
+        synchronized (streamidPromiseMap) {
+            return streamidPromiseMap.containsKey(streamId);
+        }
+    }
+
+    /**
+     * Completes the stream's promise once {@link #channelRead0(ChannelHandlerContext, FullHttpResponse)} has seen the
+     * response, so subclasses need not.
+     */
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        Integer streamId = msg instanceof FullHttpResponse
+                ? ((FullHttpResponse) msg).headers().getInt(HttpConversionUtil.ExtensionHeaderNames.STREAM_ID.text())
+                : null;
+        try {
+            super.channelRead(ctx, msg);
+        } finally {
+            if (streamId != null) {
+                Entry<ChannelFuture, ChannelPromise> entry = removeStream(streamId);
+                if (entry != null) {
+                    entry.getValue().trySuccess();
+                }
+            }
         }
     }
 
@@ -86,8 +124,7 @@ public class HttpResponseHandler extends SimpleChannelInboundHandler<FullHttpRes
             return;
         }
 
-        Entry<ChannelFuture, ChannelPromise> entry = streamidPromiseMap.get(streamId);
-        if (entry == null) {
+        if (!isPending(streamId)) {
             System.err.println("Message received for unknown stream id " + streamId);
         } else {
             // Do stuff with the message (for now just print it)
@@ -103,8 +140,51 @@ public class HttpResponseHandler extends SimpleChannelInboundHandler<FullHttpRes
 
                 logger.warn("Response status: " + responseStatusCode + "\tContent: " + responseContent);
             }
-            entry.getValue().setSuccess();
         }
     }
-}
 
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        if (cause instanceof Http2Exception.StreamException) {
+            failStream(((Http2Exception.StreamException) cause).streamId(), cause);
+        }
+        super.exceptionCaught(ctx, cause);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        List<Entry<ChannelFuture, ChannelPromise>> pending;
+        synchronized (streamidPromiseMap) {
+            pending = new ArrayList<>(streamidPromiseMap.values());
+            streamidPromiseMap.clear();
+        }
+        for (Entry<ChannelFuture, ChannelPromise> entry : pending) {
+            entry.getValue().tryFailure(new ClosedChannelException());
+        }
+        super.channelInactive(ctx);
+    }
+
+    /**
+     * Fails the stream's promise, e.g. when the stream was reset or closed without a response.
+     */
+    void failStream(int streamId, Throwable cause) {
+        Entry<ChannelFuture, ChannelPromise> entry = removeStream(streamId);
+        if (entry != null) {
+            entry.getValue().tryFailure(cause);
+        }
+    }
+
+    private Entry<ChannelFuture, ChannelPromise> removeStream(int streamId) {
+        synchronized (streamidPromiseMap) {
+            return streamidPromiseMap.remove(streamId);
+        }
+    }
+
+    private static List<Integer> streamIds(List<Entry<Integer, Entry<ChannelFuture, ChannelPromise>>> pending) {
+        List<Integer> streamIds = new ArrayList<>(pending.size());
+        for (Entry<Integer, Entry<ChannelFuture, ChannelPromise>> entry : pending) {
+            streamIds.add(entry.getKey());
+        }
+        return streamIds;
+    }
+}
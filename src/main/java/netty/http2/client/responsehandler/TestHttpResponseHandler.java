@@ -2,22 +2,14 @@ package netty.http2.client.responsehandler;
 
 
 import io.netty.buffer.ByteBuf;
-import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.channel.ChannelPromise;
 import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http2.HttpConversionUtil;
 import io.netty.util.CharsetUtil;
-import netty.http2.client.ClientUtil;
 import netty.http2.client.HttpResponseHandler;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.util.AbstractMap.SimpleEntry;
-import java.util.Iterator;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -27,55 +19,6 @@ public class TestHttpResponseHandler extends HttpResponseHandler {
     private static final Logger logger = LogManager.getLogger(TestHttpResponseHandler.class);
     static AtomicLong counter = new AtomicLong();
     static long startTime = System.currentTimeMillis();
-    private final Map<Integer, Entry<ChannelFuture, ChannelPromise>> streamidPromiseMap;
-
-    public TestHttpResponseHandler() {
-        // Use a concurrent map because we add and iterate from the main thread (just for the purposes of the example),
-        // but Netty also does a get on the map when messages are received in a EventLoop thread.
-        streamidPromiseMap = ClientUtil.getStreamidPromiseMap();
-    }
-
-    /**
-     * Create an association between an anticipated response stream id and a {@link ChannelPromise}
-     *
-     * @param streamId    The stream for which a response is expected
-     * @param writeFuture A future that represent the request write operation
-     * @param promise     The promise object that will be used to wait/notify events
-     * @return The previous object associated with {@code streamId}
-     * @see TestHttpResponseHandler#awaitResponses(long, TimeUnit)
-     */
-    public Entry<ChannelFuture, ChannelPromise> put(int streamId, ChannelFuture writeFuture, ChannelPromise promise) {
-        return streamidPromiseMap.put(streamId, new SimpleEntry<ChannelFuture, ChannelPromise>(writeFuture, promise));
-    }
-
-    /**
-     * Wait (sequentially) for a time duration for each anticipated response
-     *
-     * @param timeout Value of time to wait for each response
-     * @param unit    Units associated with {@code timeout}
-     * @see TestHttpResponseHandler#put(int, ChannelFuture, ChannelPromise)
-     */
-    public void awaitResponses(long timeout, TimeUnit unit) {
-        Iterator<Entry<Integer, Entry<ChannelFuture, ChannelPromise>>> itr = streamidPromiseMap.entrySet().iterator();
-        while (itr.hasNext()) {
-            Entry<Integer, Entry<ChannelFuture, ChannelPromise>> entry = itr.next();
-            ChannelFuture writeFuture = entry.getValue().getKey();
-            if (!writeFuture.awaitUninterruptibly(timeout, unit)) {
-                throw new IllegalStateException("Timed out waiting to write for stream id " + entry.getKey());
-            }
-            if (!writeFuture.isSuccess()) {
-                throw new RuntimeException(writeFuture.cause());
-            }
-            ChannelPromise promise = entry.getValue().getValue();
-            if (!promise.awaitUninterruptibly(timeout, unit)) {
-                throw new IllegalStateException("Timed out waiting for response on stream id " + entry.getKey());
-            }
-            if (!promise.isSuccess()) {
-                throw new RuntimeException(promise.cause());
-            }
-            itr.remove();
-        }
-    }
 
     @Override
     public void channelRead0(ChannelHandlerContext ctx, FullHttpResponse msg) throws Exception {
@@ -85,8 +28,7 @@ public class TestHttpResponseHandler extends HttpResponseHandler {
             return;
         }
 
-        Entry<ChannelFuture, ChannelPromise> entry = streamidPromiseMap.get(streamId);
-        if (entry == null) {
+        if (!isPending(streamId)) {
             System.err.println("Message received for unknown stream id " + streamId);
         } else {
             // Do stuff with the message (for now just print it)
@@ -102,8 +44,6 @@ public class TestHttpResponseHandler extends HttpResponseHandler {
 
                 logger.warn("--(Test Handler)--\nResponse status: " + responseStatusCode + "\nResponse Content: " + responseContent);
             }
-            entry.getValue().setSuccess();
         }
     }
 }
-
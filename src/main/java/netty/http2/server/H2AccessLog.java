@@ -0,0 +1,255 @@
+package netty.http2.server;
+
+import io.netty.buffer.ByteBufUtil;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous access log. Event loops copy a handful of fields into a preallocated ring of fixed-layout
+ * records; a single background thread formats them and appends to a size-rotated file. When the ring is full
+ * records are dropped and counted rather than blocking the event loop.
+ */
+public final class H2AccessLog implements AutoCloseable {
+    private static final Logger logger = LogManager.getLogger(H2AccessLog.class);
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * Which responses are logged.
+     */
+    public enum Level {
+        OFF(Integer.MAX_VALUE),
+        /**
+         * 5xx responses only.
+         */
+        ERROR(500),
+        /**
+         * 4xx and 5xx responses.
+         */
+        WARN(400),
+        /**
+         * Every response; successful ones are subject to sampling.
+         */
+        INFO(0);
+
+        private final int minStatus;
+
+        Level(int minStatus) {
+            this.minStatus = minStatus;
+        }
+    }
+
+    private final Path file;
+    private final Level level;
+    private final int sampleRate;
+    private final long maxFileBytes;
+    private final int maxFiles;
+
+    private final Record[] records;
+    private final AtomicLongArray published;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final Thread writerThread;
+    private volatile boolean running = true;
+    private Writer out;
+    private long fileBytes;
+
+    /**
+     * @param file         log file; rotated copies get a {@code .1}, {@code .2}, ... suffix
+     * @param level        minimum level to log
+     * @param sampleRate   log one in {@code sampleRate} successful responses; errors are always logged
+     * @param capacity     number of preallocated records, rounded up to a power of two
+     * @param maxFileBytes size at which the file is rotated
+     * @param maxFiles     number of rotated files to keep
+     */
+    public H2AccessLog(String file, Level level, int sampleRate, int capacity, long maxFileBytes, int maxFiles) {
+        if (sampleRate < 1) {
+            throw new IllegalArgumentException("sampleRate (expected >= 1): " + sampleRate);
+        }
+        this.file = Paths.get(file);
+        this.level = level;
+        this.sampleRate = sampleRate;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = maxFiles;
+
+        int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        this.records = new Record[size];
+        for (int i = 0; i < size; i++) {
+            records[i] = new Record();
+        }
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            published.set(i, -1);
+        }
+        this.mask = size - 1;
+
+        this.writerThread = new DefaultThreadFactory("h2-access-log", true).newThread(this::drain);
+        this.writerThread.start();
+    }
+
+    /**
+     * @return {@code true} if a response with {@code status} would be recorded at this level
+     */
+    public boolean isEnabled(int status) {
+        return status >= level.minStatus;
+    }
+
+    /**
+     * Records one response. Never blocks; the record is dropped if the writer thread has fallen behind.
+     */
+    public void log(SocketAddress remote, int streamId, String method, String path, int status, long bytes,
+                    long durationNanos) {
+        if (!isEnabled(status)) {
+            return;
+        }
+        if (status < 400 && sampleRate > 1
+                && ThreadLocalRandom.current().nextInt(sampleRate) != 0) {
+            return;
+        }
+
+        long sequence;
+        do {
+            sequence = head.get();
+            if (sequence - tail.get() >= records.length) {
+                dropped.incrementAndGet();
+                return;
+            }
+        } while (!head.compareAndSet(sequence, sequence + 1));
+
+        Record record = records[(int) (sequence & mask)];
+        record.timestampMillis = System.currentTimeMillis();
+        record.remote = remote;
+        record.streamId = streamId;
+        record.method = method;
+        record.path = path;
+        record.status = status;
+        record.bytes = bytes;
+        record.durationNanos = durationNanos;
+        published.lazySet((int) (sequence & mask), sequence);
+    }
+
+    /**
+     * @return records dropped because the ring was full
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drain() {
+        StringBuilder line = new StringBuilder(256);
+        try {
+            openFile();
+            while (true) {
+                long sequence = tail.get();
+                int slot = (int) (sequence & mask);
+                if (published.get(slot) != sequence) {
+                    if (!running && sequence == head.get()) {
+                        break;
+                    }
+                    out.flush();
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    continue;
+                }
+
+                line.setLength(0);
+                records[slot].format(line);
+                // Free the slot before the (slow) write so producers are not held up by disk I/O.
+                tail.lazySet(sequence + 1);
+
+                out.write(line.toString());
+                // The file size is in bytes; paths and addresses may hold multi-byte characters.
+                fileBytes += ByteBufUtil.utf8Bytes(line);
+                if (fileBytes >= maxFileBytes) {
+                    rotate();
+                }
+            }
+            out.close();
+        } catch (IOException e) {
+            logger.error("Access log writer stopped", e);
+        }
+    }
+
+    private void openFile() throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        fileBytes = Files.size(file);
+    }
+
+    private void rotate() throws IOException {
+        out.close();
+        for (int i = maxFiles - 1; i >= 1; i--) {
+            Path source = Paths.get(file + "." + i);
+            if (Files.exists(source)) {
+                Files.move(source, Paths.get(file + "." + (i + 1)), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        if (maxFiles > 0) {
+            Files.move(file, Paths.get(file + ".1"), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.delete(file);
+        }
+        openFile();
+    }
+
+    /**
+     * One preallocated log entry. Only holds references the request already owns, so logging allocates nothing
+     * on the event loop.
+     */
+    private static final class Record {
+        private long timestampMillis;
+        private SocketAddress remote;
+        private int streamId;
+        private String method;
+        private String path;
+        private int status;
+        private long bytes;
+        private long durationNanos;
+
+        void format(StringBuilder line) {
+            line.append(Instant.ofEpochMilli(timestampMillis)).append(' ')
+                    .append(remote).append(' ')
+                    .append(streamId).append(' ')
+                    .append(method).append(' ')
+                    .append(path).append(' ')
+                    .append(status).append(' ')
+                    .append(bytes < 0 ? "-" : Long.toString(bytes)).append(' ')
+                    .append(TimeUnit.NANOSECONDS.toMicros(durationNanos)).append("us\n");
+            remote = null;
+            path = null;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package netty.http2.server;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Non-blocking variant of {@link H2ContextHandler}. Methods are called on the event loop and must return
+ * immediately; the response is written to the request's stream when the returned stage completes. Stages
+ * that do not complete within the server's async timeout are answered with 504 Gateway Timeout.
+ */
+public interface H2AsyncContextHandler {
+    CompletionStage<H2Response> handleGetAsync(H2Request request);
+
+    CompletionStage<H2Response> handlePostAsync(H2Request request, String content);
+
+    CompletionStage<H2Response> handlePutAsync(H2Request request, String content);
+
+    CompletionStage<H2Response> handleDeleteAsync(H2Request request);
+}
@@ -0,0 +1,177 @@
+package netty.http2.server;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http2.DefaultHttp2Headers;
+import io.netty.handler.codec.http2.Http2Headers;
+import io.netty.util.AsciiString;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Negotiated gzip/deflate compression of buffered response bodies. A body is compressed when the client
+ * accepts one of the two encodings, the body is at least {@code minSize} bytes, its Content-Type starts with
+ * one of the allowed prefixes and the handler has not set a Content-Encoding itself.
+ * <p>
+ * Compressed responses of cached routes are stored in {@link H2ResponseCache} per encoding, so each variant
+ * is only compressed once.
+ */
+public final class H2Compression {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final int minSize;
+    private final int level;
+    private final AsciiString[] mimeTypePrefixes;
+
+    /**
+     * @param minSize          smallest body worth compressing, in bytes
+     * @param level            deflate level, 1 (fastest) to 9 (smallest)
+     * @param mimeTypePrefixes allowed Content-Type prefixes, e.g. {@code text/} or {@code application/json}
+     */
+    public H2Compression(int minSize, int level, CharSequence... mimeTypePrefixes) {
+        if (level < 1 || level > 9) {
+            throw new IllegalArgumentException("level (expected 1-9): " + level);
+        }
+        this.minSize = minSize;
+        this.level = level;
+        this.mimeTypePrefixes = new AsciiString[mimeTypePrefixes.length];
+        for (int i = 0; i < mimeTypePrefixes.length; i++) {
+            this.mimeTypePrefixes[i] = AsciiString.of(mimeTypePrefixes[i]).toLowerCase();
+        }
+    }
+
+    /**
+     * Picks the encoding to use from an Accept-Encoding header. gzip wins a tie; encodings with {@code q=0}
+     * are refused.
+     *
+     * @return {@link HttpHeaderValues#GZIP}, {@link HttpHeaderValues#DEFLATE} or {@code null} for identity
+     */
+    public static AsciiString negotiate(CharSequence acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        float gzip = -1;
+        float deflate = -1;
+        float any = -1;
+        int length = acceptEncoding.length();
+        int start = 0;
+        while (start < length) {
+            int end = indexOf(acceptEncoding, ',', start, length);
+            int parameters = indexOf(acceptEncoding, ';', start, end);
+            CharSequence coding = AsciiString.trim(acceptEncoding.subSequence(start, parameters));
+            float q = parameters < end ? quality(acceptEncoding.subSequence(parameters + 1, end)) : 1.0f;
+            if (AsciiString.contentEqualsIgnoreCase(coding, HttpHeaderValues.GZIP)
+                    || AsciiString.contentEqualsIgnoreCase(coding, HttpHeaderValues.X_GZIP)) {
+                gzip = q;
+            } else if (AsciiString.contentEqualsIgnoreCase(coding, HttpHeaderValues.DEFLATE)
+                    || AsciiString.contentEqualsIgnoreCase(coding, HttpHeaderValues.X_DEFLATE)) {
+                deflate = q;
+            } else if (AsciiString.contentEquals(coding, "*")) {
+                any = q;
+            }
+            start = end + 1;
+        }
+        if (gzip < 0) {
+            gzip = any;
+        }
+        if (deflate < 0) {
+            deflate = any;
+        }
+        if (gzip > 0 && gzip >= deflate) {
+            return HttpHeaderValues.GZIP;
+        }
+        return deflate > 0 ? HttpHeaderValues.DEFLATE : null;
+    }
+
+    /**
+     * @return {@code true} if a buffered body with these headers should be compressed
+     */
+    boolean isCompressible(Http2Headers headers, int contentLength) {
+        if (contentLength < minSize || headers.contains(HttpHeaderNames.CONTENT_ENCODING)) {
+            return false;
+        }
+        CharSequence contentType = headers.get(HttpHeaderNames.CONTENT_TYPE);
+        if (contentType == null) {
+            return false;
+        }
+        for (AsciiString prefix : mimeTypePrefixes) {
+            if (contentType.length() >= prefix.length()
+                    && AsciiString.regionMatches(contentType, true, 0, prefix, 0, prefix.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compresses the readable bytes of {@code payload} without consuming them.
+     */
+    ByteBuf compress(ByteBuf payload, AsciiString encoding, ByteBufAllocator alloc) throws IOException {
+        ByteBuf compressed = alloc.buffer(payload.readableBytes() / 2 + 64);
+        Deflater deflater = HttpHeaderValues.GZIP.equals(encoding) ? null : new Deflater(level);
+        try (OutputStream out = deflater == null
+                ? new LeveledGzipOutputStream(new ByteBufOutputStream(compressed), level)
+                : new DeflaterOutputStream(new ByteBufOutputStream(compressed), deflater, BUFFER_SIZE)) {
+            payload.getBytes(payload.readerIndex(), out, payload.readableBytes());
+        } catch (IOException | RuntimeException e) {
+            compressed.release();
+            throw e;
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+        return compressed;
+    }
+
+    /**
+     * @return a copy of {@code headers} describing the body compressed with {@code encoding}
+     */
+    static Http2Headers compressedHeaders(Http2Headers headers, AsciiString encoding) {
+        Http2Headers compressed = new DefaultHttp2Headers(false);
+        compressed.set(headers);
+        compressed.remove(HttpHeaderNames.CONTENT_LENGTH);
+        compressed.set(HttpHeaderNames.CONTENT_ENCODING, encoding);
+        compressed.add(HttpHeaderNames.VARY, HttpHeaderNames.ACCEPT_ENCODING);
+        return compressed;
+    }
+
+    private static int indexOf(CharSequence value, char c, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (value.charAt(i) == c) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    private static float quality(CharSequence parameters) {
+        CharSequence trimmed = AsciiString.trim(parameters);
+        if (trimmed.length() < 2 || (trimmed.charAt(0) != 'q' && trimmed.charAt(0) != 'Q')
+                || trimmed.charAt(1) != '=') {
+            return 1.0f;
+        }
+        try {
+            return Float.parseFloat(trimmed.subSequence(2, trimmed.length()).toString());
+        } catch (NumberFormatException e) {
+            return 0f;
+        }
+    }
+
+    /**
+     * {@link GZIPOutputStream} at a chosen compression level instead of the default one.
+     */
+    private static final class LeveledGzipOutputStream extends GZIPOutputStream {
+        LeveledGzipOutputStream(OutputStream out, int level) throws IOException {
+            super(out, BUFFER_SIZE);
+            def.setLevel(level);
+        }
+    }
+}
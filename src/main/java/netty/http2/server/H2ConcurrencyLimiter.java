@@ -0,0 +1,156 @@
+package netty.http2.server;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.EventExecutor;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Adapts SETTINGS_MAX_CONCURRENT_STREAMS of every open connection to the load on the server. A probe on each
+ * worker event loop measures how late its scheduled tasks start. When the worst lag or the handler backlog
+ * crosses its threshold the advertised limit is halved, down to a floor; once both drop below half their
+ * threshold it is doubled again, up to the configured maximum. Clients see the new limit in a SETTINGS frame,
+ * and streams opened beyond it are refused by the codec.
+ */
+public final class H2ConcurrencyLimiter {
+    private static final Logger logger = LogManager.getLogger(H2ConcurrencyLimiter.class);
+
+    private final long maxStreams;
+    private final long minStreams;
+    private final long lagThresholdNanos;
+    private final int pendingThreshold;
+    private final long intervalNanos;
+    private final AtomicLong currentLimit;
+    private final Set<Http2Handler> handlers = ConcurrentHashMap.newKeySet();
+    private AtomicLongArray lags;
+    private H2Dispatcher dispatcher;
+    private volatile boolean running;
+
+    /**
+     * @param maxStreams       limit advertised while the server is healthy
+     * @param minStreams       floor the limit is never lowered below
+     * @param lagThreshold     event loop lag considered overload; at least 2 ns
+     * @param pendingThreshold queued handler tasks considered overload; at least 2
+     * @param interval         how often each event loop is probed
+     */
+    public H2ConcurrencyLimiter(long maxStreams, long minStreams, long lagThreshold, int pendingThreshold,
+                                long interval, TimeUnit unit) {
+        if (minStreams < 1 || minStreams > maxStreams) {
+            throw new IllegalArgumentException("minStreams (expected 1.." + maxStreams + "): " + minStreams);
+        }
+        if (unit.toNanos(lagThreshold) < 2) {
+            // Likewise recovery needs a lag below half the threshold, and lag is never negative.
+            throw new IllegalArgumentException("lagThreshold (expected >= 2 ns): " + lagThreshold + ' ' + unit);
+        }
+        if (pendingThreshold < 2) {
+            // Recovery needs fewer than half the threshold pending, which 0 or 1 can never satisfy.
+            throw new IllegalArgumentException("pendingThreshold (expected >= 2): " + pendingThreshold);
+        }
+        this.maxStreams = maxStreams;
+        this.minStreams = minStreams;
+        this.lagThresholdNanos = unit.toNanos(lagThreshold);
+        this.pendingThreshold = pendingThreshold;
+        this.intervalNanos = unit.toNanos(interval);
+        this.currentLimit = new AtomicLong(maxStreams);
+    }
+
+    /**
+     * @return the MAX_CONCURRENT_STREAMS value currently advertised
+     */
+    public long getCurrentLimit() {
+        return currentLimit.get();
+    }
+
+    void start(EventLoopGroup workers, H2Dispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+        this.running = true;
+        List<EventExecutor> loops = new ArrayList<>();
+        for (EventExecutor loop : workers) {
+            loops.add(loop);
+        }
+        lags = new AtomicLongArray(loops.size());
+        for (int i = 0; i < loops.size(); i++) {
+            new LagProbe(loops.get(i), i).schedule();
+        }
+    }
+
+    void stop() {
+        running = false;
+        handlers.clear();
+    }
+
+    /**
+     * Called by a connection once its SETTINGS exchange has started; brings it up to date with the current limit.
+     */
+    void register(Http2Handler handler) {
+        handlers.add(handler);
+        handler.updateMaxConcurrentStreams(currentLimit.get());
+    }
+
+    void unregister(Http2Handler handler) {
+        handlers.remove(handler);
+    }
+
+    private void evaluate() {
+        long maxLag = 0;
+        for (int i = 0; i < lags.length(); i++) {
+            maxLag = Math.max(maxLag, lags.get(i));
+        }
+        long pending = dispatcher.getPendingTasks();
+
+        long limit = currentLimit.get();
+        long next = limit;
+        if (maxLag > lagThresholdNanos || pending > pendingThreshold) {
+            next = Math.max(minStreams, limit / 2);
+        } else if (maxLag < lagThresholdNanos / 2 && pending < pendingThreshold / 2) {
+            next = Math.min(maxStreams, limit * 2);
+        }
+        if (next != limit && currentLimit.compareAndSet(limit, next)) {
+            logger.warn("Changing MAX_CONCURRENT_STREAMS from " + limit + " to " + next + " (event loop lag "
+                    + TimeUnit.NANOSECONDS.toMillis(maxLag) + "ms, " + pending + " pending handler tasks)");
+            for (Http2Handler handler : handlers) {
+                handler.updateMaxConcurrentStreams(next);
+            }
+        }
+    }
+
+    /**
+     * Reschedules itself on one event loop and records how late each run starts.
+     */
+    private final class LagProbe implements Runnable {
+        private final EventExecutor loop;
+        private final int index;
+        private long expectedNanos;
+
+        LagProbe(EventExecutor loop, int index) {
+            this.loop = loop;
+            this.index = index;
+        }
+
+        void schedule() {
+            expectedNanos = System.nanoTime() + intervalNanos;
+            loop.schedule(this, intervalNanos, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void run() {
+            if (!running) {
+                return;
+            }
+            lags.set(index, Math.max(0, System.nanoTime() - expectedNanos));
+            // One probe drives the decision so the limit moves at most one step per interval.
+            if (index == 0) {
+                evaluate();
+            }
+            schedule();
+        }
+    }
+}
@@ -5,6 +5,10 @@ import io.netty.handler.codec.http.FullHttpRequest;
 
 import java.util.HashMap;
 
+/**
+ * Handler receiving headers and query parameters as {@code HashMap} copies. Kept for existing handlers; new code
+ * should implement {@link H2RequestHandler}.
+ */
 public interface H2ContextHandler {
     H2Response handleGet(FullHttpRequest request, ChannelHandlerContext ctx, HashMap<String, String> headersMap,
                          HashMap<String, String> queryParamsMap);
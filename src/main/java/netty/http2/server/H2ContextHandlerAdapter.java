@@ -0,0 +1,37 @@
+package netty.http2.server;
+
+/**
+ * Legacy adapter running an {@link H2ContextHandler} as an {@link H2RequestHandler}. Only requests served by such
+ * a handler pay for copying headers and query parameters into {@code HashMap}s.
+ */
+final class H2ContextHandlerAdapter implements H2RequestHandler {
+    private final H2ContextHandler handler;
+
+    H2ContextHandlerAdapter(H2ContextHandler handler) {
+        this.handler = handler;
+    }
+
+    @Override
+    public H2Response handleGet(H2Request request) {
+        return handler.handleGet(request.getFullHttpRequest(), request.getChannelHandlerContext(),
+                request.getHeadersMap(), request.getQueryParamsMap());
+    }
+
+    @Override
+    public H2Response handlePost(H2Request request, String content) {
+        return handler.handlePost(request.getFullHttpRequest(), request.getChannelHandlerContext(),
+                request.getHeadersMap(), request.getQueryParamsMap(), content);
+    }
+
+    @Override
+    public H2Response handlePut(H2Request request, String content) {
+        return handler.handlePut(request.getFullHttpRequest(), request.getChannelHandlerContext(),
+                request.getHeadersMap(), request.getQueryParamsMap(), content);
+    }
+
+    @Override
+    public H2Response handleDelete(H2Request request) {
+        return handler.handleDelete(request.getFullHttpRequest(), request.getChannelHandlerContext(),
+                request.getHeadersMap(), request.getQueryParamsMap());
+    }
+}
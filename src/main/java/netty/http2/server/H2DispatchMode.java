@@ -0,0 +1,20 @@
+package netty.http2.server;
+
+/**
+ * Where {@link H2ContextHandler} methods are executed.
+ */
+public enum H2DispatchMode {
+    /**
+     * Run handlers directly on the channel's event loop. Only suitable for handlers that never block.
+     */
+    EVENT_LOOP,
+    /**
+     * Run handlers on a bounded thread pool and write the response back on the event loop.
+     */
+    EXECUTOR,
+    /**
+     * Run every request on its own virtual thread. Falls back to {@link #EXECUTOR} when the JDK has no
+     * virtual threads.
+     */
+    VIRTUAL_THREAD
+}
@@ -0,0 +1,141 @@
+package netty.http2.server;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides which {@link Executor} runs the context handler of a request. A {@code null} executor means the
+ * handler runs inline on the event loop that read the request.
+ */
+public final class H2Dispatcher {
+    private static final Logger logger = LogManager.getLogger(H2Dispatcher.class);
+
+    private final H2DispatchMode dispatchMode;
+    private final ExecutorService defaultExecutor;
+    private final HashMap<String, ExecutorService> routeExecutorMap;
+    private final long asyncTimeoutMillis;
+
+    /**
+     * Starts the default pool the dispatch mode calls for and one bounded pool per entry of
+     * {@code routePoolSizes}; {@link #shutdown()} stops them all.
+     */
+    H2Dispatcher(H2DispatchMode dispatchMode, int handlerThreads, int handlerQueueSize,
+                 Map<String, PoolSize> routePoolSizes, long asyncTimeoutMillis) {
+        this.routeExecutorMap = new HashMap<>();
+        for (Map.Entry<String, PoolSize> entry : routePoolSizes.entrySet()) {
+            String template = entry.getKey();
+            routeExecutorMap.put(template, newBoundedExecutor("h2-route" + template.replace('/', '-'),
+                    entry.getValue().threads, entry.getValue().queueSize));
+        }
+        this.asyncTimeoutMillis = asyncTimeoutMillis;
+
+        ExecutorService executor = null;
+        if (dispatchMode == H2DispatchMode.VIRTUAL_THREAD) {
+            executor = newVirtualThreadExecutor();
+            if (executor == null) {
+                logger.warn("Virtual threads are not available on this JDK, falling back to "
+                        + H2DispatchMode.EXECUTOR);
+                dispatchMode = H2DispatchMode.EXECUTOR;
+            }
+        }
+        if (dispatchMode == H2DispatchMode.EXECUTOR) {
+            executor = newBoundedExecutor("h2-handler", handlerThreads, handlerQueueSize);
+        }
+        this.dispatchMode = dispatchMode;
+        this.defaultExecutor = executor;
+    }
+
+    /**
+     * Dispatcher running every handler on the event loop, used until a server installs its own.
+     */
+    static H2Dispatcher eventLoop() {
+        return new H2Dispatcher(H2DispatchMode.EVENT_LOOP, 0, 0, new HashMap<>(), 30000L);
+    }
+
+    /**
+     * Creates a fixed size pool that rejects work instead of queueing it without bound.
+     */
+    static ExecutorService newBoundedExecutor(String poolName, int threads, int queueSize) {
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), new DefaultThreadFactory(poolName, true),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        // Looked up reflectively so the server still builds and runs on Java 8.
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    public H2DispatchMode getDispatchMode() {
+        return dispatchMode;
+    }
+
+    /**
+     * @return how long an {@link H2AsyncContextHandler} may take before its stream is answered with 504
+     */
+    public long getAsyncTimeoutMillis() {
+        return asyncTimeoutMillis;
+    }
+
+    /**
+     * @param template path template of the matched route
+     * @return the executor to run the handler on, or {@code null} to run it on the event loop
+     */
+    public Executor executorFor(String template) {
+        ExecutorService routeExecutor = routeExecutorMap.get(template);
+        return routeExecutor != null ? routeExecutor : defaultExecutor;
+    }
+
+    /**
+     * @return handler tasks queued but not yet started, summed over the bounded pools
+     */
+    public long getPendingTasks() {
+        long pending = queued(defaultExecutor);
+        for (ExecutorService routeExecutor : routeExecutorMap.values()) {
+            pending += queued(routeExecutor);
+        }
+        return pending;
+    }
+
+    private static int queued(ExecutorService executor) {
+        return executor instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) executor).getQueue().size() : 0;
+    }
+
+    /**
+     * Threads and queue capacity of a bounded pool, recorded by the server builder and started with the server.
+     */
+    static final class PoolSize {
+        final int threads;
+        final int queueSize;
+
+        PoolSize(int threads, int queueSize) {
+            this.threads = threads;
+            this.queueSize = queueSize;
+        }
+    }
+
+    void shutdown() {
+        if (defaultExecutor != null) {
+            defaultExecutor.shutdown();
+        }
+        for (Map.Entry<String, ExecutorService> entry : routeExecutorMap.entrySet()) {
+            entry.getValue().shutdown();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package netty.http2.server;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.concurrent.Future;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces flushes so frames written for many streams of a connection leave in one {@code writev} instead of
+ * one syscall per response. Flushes issued while a read is in progress are held until the read completes;
+ * flushes issued outside a read, e.g. by handlers completing on other threads, are held until the end of the
+ * current event loop iteration or {@code maxDelay}, whichever is configured. After {@code maxBatch} held
+ * flushes the channel is flushed immediately, and held data is always flushed before the channel becomes
+ * unwritable or closes.
+ * <p>
+ * Modelled on Netty's {@code FlushConsolidationHandler}, with a time bound on top.
+ */
+public final class H2FlushBatcher extends ChannelDuplexHandler {
+    private final int maxBatch;
+    private final long maxDelayNanos;
+    private ChannelHandlerContext ctx;
+    private boolean readInProgress;
+    private int pendingFlushes;
+    private Future<?> scheduledFlush;
+    private final Runnable flushTask = () -> {
+        scheduledFlush = null;
+        if (pendingFlushes > 0 && !readInProgress) {
+            flushNow(ctx);
+        }
+    };
+
+    /**
+     * @param maxBatch held flushes after which the channel is flushed right away
+     * @param maxDelay how long a flush outside a read may be held; 0 holds it until the event loop has run the
+     *                 tasks already queued
+     */
+    public H2FlushBatcher(int maxBatch, long maxDelay, TimeUnit unit) {
+        if (maxBatch < 1) {
+            throw new IllegalArgumentException("maxBatch (expected >= 1): " + maxBatch);
+        }
+        this.maxBatch = maxBatch;
+        this.maxDelayNanos = unit.toNanos(maxDelay);
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) {
+        if (++pendingFlushes >= maxBatch) {
+            flushNow(ctx);
+        } else if (!readInProgress && scheduledFlush == null) {
+            scheduledFlush = maxDelayNanos > 0
+                    ? ctx.executor().schedule(flushTask, maxDelayNanos, TimeUnit.NANOSECONDS)
+                    : ctx.executor().submit(flushTask);
+        }
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        readInProgress = true;
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) {
+        // Handlers further up flush from channelReadComplete; let them, then write everything in one go.
+        ctx.fireChannelReadComplete();
+        readInProgress = false;
+        flushIfPending(ctx);
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+        if (!ctx.channel().isWritable()) {
+            flushIfPending(ctx);
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        flushIfPending(ctx);
+        ctx.fireExceptionCaught(cause);
+    }
+
+    @Override
+    public void disconnect(ChannelHandlerContext ctx, ChannelPromise promise) {
+        flushIfPending(ctx);
+        ctx.disconnect(promise);
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) {
+        flushIfPending(ctx);
+        ctx.close(promise);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        flushIfPending(ctx);
+    }
+
+    private void flushIfPending(ChannelHandlerContext ctx) {
+        if (pendingFlushes > 0) {
+            flushNow(ctx);
+        }
+    }
+
+    private void flushNow(ChannelHandlerContext ctx) {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        pendingFlushes = 0;
+        ctx.flush();
+    }
+}
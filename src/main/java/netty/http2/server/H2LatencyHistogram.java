@@ -0,0 +1,133 @@
+package netty.http2.server;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram in the style of HdrHistogram: microsecond values fall into log-linear buckets,
+ * {@code 2^subBucketBits} per power of two, so with the default of four every bucket is at most 25% wide
+ * relative to its value. Recording is one array increment plus two adders; values from 2^37 microseconds, about 38
+ * hours, land in the last bucket.
+ */
+public final class H2LatencyHistogram {
+    private static final int DEFAULT_SUB_BUCKET_BITS = 2;
+    private static final int MAX_EXPONENT = 36;
+
+    private final int subBucketBits;
+    private final int subBuckets;
+    private final int buckets;
+    private final AtomicLongArray counts;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumMicros = new LongAdder();
+    private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+
+    public H2LatencyHistogram() {
+        this(DEFAULT_SUB_BUCKET_BITS);
+    }
+
+    /**
+     * @param subBucketBits precision: each power of two is split into {@code 2^subBucketBits} buckets, e.g. 5 for
+     *                      buckets at most about 3% wide
+     */
+    public H2LatencyHistogram(int subBucketBits) {
+        if (subBucketBits < 1 || subBucketBits > 10) {
+            throw new IllegalArgumentException("subBucketBits (expected 1-10): " + subBucketBits);
+        }
+        this.subBucketBits = subBucketBits;
+        this.subBuckets = 1 << subBucketBits;
+        this.buckets = (MAX_EXPONENT - subBucketBits + 2) * subBuckets;
+        this.counts = new AtomicLongArray(buckets);
+    }
+
+    public void record(long durationNanos) {
+        long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(durationNanos));
+        counts.incrementAndGet(bucketIndex(micros));
+        count.increment();
+        sumMicros.add(micros);
+        maxMicros.accumulate(micros);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSumMicros() {
+        return sumMicros.sum();
+    }
+
+    /**
+     * @return the largest value recorded, exactly, in microseconds
+     */
+    public long getMaxMicros() {
+        return maxMicros.get();
+    }
+
+    /**
+     * @return the smallest recorded bucket bound at or below which {@code quantile} of the values fall,
+     * in microseconds
+     */
+    public long getValueAtQuantile(double quantile) {
+        long total = 0;
+        long[] snapshot = new long[buckets];
+        for (int i = 0; i < buckets; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        long target = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < buckets; i++) {
+            seen += snapshot[i];
+            if (seen >= target && seen > 0) {
+                return upperBoundMicros(i);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Appends the histogram in Prometheus text format, with one cumulative bucket per power of two.
+     *
+     * @param name   metric name without suffix, e.g. {@code h2_request_duration_seconds}
+     * @param labels label pairs without braces, e.g. {@code route="/users/:id",method="GET"}
+     */
+    void render(StringBuilder out, String name, String labels) {
+        long cumulative = 0;
+        for (int i = 0; i < buckets; i++) {
+            cumulative += counts.get(i);
+            if (i % subBuckets == subBuckets - 1) {
+                // Values are whole microseconds, so the largest one in the bucket is an inclusive bound.
+                out.append(name).append("_bucket{").append(labels).append(",le=\"")
+                        .append((upperBoundMicros(i) - 1) / 1e6).append("\"} ").append(cumulative).append('\n');
+            }
+        }
+        out.append(name).append("_bucket{").append(labels).append(",le=\"+Inf\"} ").append(cumulative).append('\n');
+        out.append(name).append("_sum{").append(labels).append("} ").append(getSumMicros() / 1e6).append('\n');
+        out.append(name).append("_count{").append(labels).append("} ").append(cumulative).append('\n');
+    }
+
+    int bucketIndex(long micros) {
+        if (micros < subBuckets) {
+            return (int) micros;
+        }
+        int exponent = Math.min(63 - Long.numberOfLeadingZeros(micros), MAX_EXPONENT);
+        if (exponent == MAX_EXPONENT && micros >= 1L << (MAX_EXPONENT + 1)) {
+            return buckets - 1;
+        }
+        int subBucket = (int) (micros >>> (exponent - subBucketBits)) & (subBuckets - 1);
+        return (exponent - subBucketBits + 1) * subBuckets + subBucket;
+    }
+
+    /**
+     * @return the exclusive upper bound of bucket {@code index}, in microseconds
+     */
+    long upperBoundMicros(int index) {
+        if (index < subBuckets) {
+            return index + 1;
+        }
+        int exponent = index / subBuckets + subBucketBits - 1;
+        int subBucket = index % subBuckets;
+        return (long) (subBuckets + subBucket + 1) << (exponent - subBucketBits);
+    }
+}
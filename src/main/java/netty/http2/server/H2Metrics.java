@@ -0,0 +1,217 @@
+package netty.http2.server;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufAllocatorMetric;
+import io.netty.buffer.ByteBufAllocatorMetricProvider;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocatorMetric;
+import io.netty.handler.codec.http.HttpMethod;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Server-wide counters, gauges and per-route latency histograms. Everything is recorded with adders and atomic
+ * arrays from the event loops; {@link #render()} reads them without stopping writers, so a scrape sees each
+ * value at a slightly different instant.
+ */
+public final class H2Metrics {
+    /**
+     * Route label for requests no route matched.
+     */
+    static final String UNMATCHED_ROUTE = "<unmatched>";
+    private static final String[] METHOD_LABELS = {"GET", "POST", "PUT", "DELETE", "OTHER"};
+
+    private final ConcurrentMap<String, H2LatencyHistogram[]> latencies = new ConcurrentHashMap<>();
+    private final LongAdder activeConnections = new LongAdder();
+    private final LongAdder activeStreams = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder rstReceived = new LongAdder();
+    private final LongAdder rstSent = new LongAdder();
+    private final LongAdder goAwayReceived = new LongAdder();
+    private final LongAdder goAwaySent = new LongAdder();
+
+    /**
+     * Records the time from a request's HEADERS to the last frame of its response being written.
+     */
+    void recordLatency(H2Request request) {
+        H2Route route = request.getRoute();
+        String template = route == null ? UNMATCHED_ROUTE : route.getTemplate();
+        H2LatencyHistogram[] histograms = latencies.get(template);
+        if (histograms == null) {
+            histograms = new H2LatencyHistogram[METHOD_LABELS.length];
+            for (int i = 0; i < histograms.length; i++) {
+                histograms[i] = new H2LatencyHistogram();
+            }
+            H2LatencyHistogram[] existing = latencies.putIfAbsent(template, histograms);
+            if (existing != null) {
+                histograms = existing;
+            }
+        }
+        histograms[methodIndex(request.getHttpMethod())].record(System.nanoTime() - request.getStartNanos());
+    }
+
+    /**
+     * @return the latency histogram of one route and method, or {@code null} if it has not served a request
+     */
+    public H2LatencyHistogram getLatency(String template, HttpMethod method) {
+        H2LatencyHistogram[] histograms = latencies.get(template);
+        return histograms == null ? null : histograms[methodIndex(method)];
+    }
+
+    void connectionOpened() {
+        activeConnections.increment();
+    }
+
+    void connectionClosed() {
+        activeConnections.decrement();
+    }
+
+    void streamOpened() {
+        activeStreams.increment();
+    }
+
+    void streamClosed() {
+        activeStreams.decrement();
+    }
+
+    void bytesRead(long bytes) {
+        bytesRead.add(bytes);
+    }
+
+    void bytesWritten(long bytes) {
+        bytesWritten.add(bytes);
+    }
+
+    void rstReceived() {
+        rstReceived.increment();
+    }
+
+    void rstSent() {
+        rstSent.increment();
+    }
+
+    void goAwayReceived() {
+        goAwayReceived.increment();
+    }
+
+    void goAwaySent() {
+        goAwaySent.increment();
+    }
+
+    public long getActiveConnections() {
+        return activeConnections.sum();
+    }
+
+    public long getActiveStreams() {
+        return activeStreams.sum();
+    }
+
+    /**
+     * @return all metrics in the Prometheus text exposition format
+     */
+    public String render() {
+        StringBuilder out = new StringBuilder(4096);
+        gauge(out, "h2_connections_active", "Open client connections.", activeConnections.sum());
+        gauge(out, "h2_streams_active", "Open HTTP/2 streams.", activeStreams.sum());
+        counter(out, "h2_bytes_read_total", "Bytes read from client sockets.", bytesRead.sum());
+        counter(out, "h2_bytes_written_total", "Bytes written to client sockets.", bytesWritten.sum());
+        counter(out, "h2_rst_stream_received_total", "RST_STREAM frames received.", rstReceived.sum());
+        counter(out, "h2_rst_stream_sent_total", "RST_STREAM frames sent.", rstSent.sum());
+        counter(out, "h2_goaway_received_total", "GOAWAY frames received.", goAwayReceived.sum());
+        counter(out, "h2_goaway_sent_total", "GOAWAY frames sent.", goAwaySent.sum());
+
+        renderServerState(out);
+        renderAllocator(out, ByteBufAllocator.DEFAULT);
+
+        out.append("# HELP h2_request_duration_seconds Time from request HEADERS to the last response frame written.\n")
+                .append("# TYPE h2_request_duration_seconds histogram\n");
+        // Sorted so consecutive scrapes list series in the same order.
+        for (Map.Entry<String, H2LatencyHistogram[]> entry : new TreeMap<>(latencies).entrySet()) {
+            H2LatencyHistogram[] histograms = entry.getValue();
+            for (int i = 0; i < histograms.length; i++) {
+                if (histograms[i].getCount() > 0) {
+                    histograms[i].render(out, "h2_request_duration_seconds",
+                            "route=\"" + escape(entry.getKey()) + "\",method=\"" + METHOD_LABELS[i] + "\"");
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    private static void renderServerState(StringBuilder out) {
+        gauge(out, "h2_handler_tasks_pending", "Handler tasks queued on the bounded executors.",
+                ServerUtil.getDispatcher().getPendingTasks());
+        H2ResponseCache responseCache = ServerUtil.getResponseCache();
+        if (responseCache != null) {
+            counter(out, "h2_cache_hits_total", "Response cache hits.", responseCache.getHits());
+            counter(out, "h2_cache_misses_total", "Response cache misses.", responseCache.getMisses());
+            counter(out, "h2_cache_evictions_total", "Response cache evictions.", responseCache.getEvictions());
+            gauge(out, "h2_cache_bytes", "Bytes held by the response cache.", responseCache.getSizeBytes());
+        }
+        H2ConcurrencyLimiter concurrencyLimiter = ServerUtil.getConcurrencyLimiter();
+        if (concurrencyLimiter != null) {
+            gauge(out, "h2_max_concurrent_streams", "Currently advertised SETTINGS_MAX_CONCURRENT_STREAMS.",
+                    concurrencyLimiter.getCurrentLimit());
+        }
+        H2AccessLog accessLog = ServerUtil.getAccessLog();
+        if (accessLog != null) {
+            counter(out, "h2_access_log_dropped_total", "Access log records dropped on a full ring.",
+                    accessLog.getDropped());
+        }
+    }
+
+    private static void renderAllocator(StringBuilder out, ByteBufAllocator allocator) {
+        if (!(allocator instanceof ByteBufAllocatorMetricProvider)) {
+            return;
+        }
+        ByteBufAllocatorMetric metric = ((ByteBufAllocatorMetricProvider) allocator).metric();
+        gauge(out, "netty_allocator_used_heap_bytes", "Heap memory held by the default allocator.",
+                metric.usedHeapMemory());
+        gauge(out, "netty_allocator_used_direct_bytes", "Direct memory held by the default allocator.",
+                metric.usedDirectMemory());
+        if (allocator instanceof PooledByteBufAllocator) {
+            PooledByteBufAllocatorMetric pooled = ((PooledByteBufAllocator) allocator).metric();
+            gauge(out, "netty_allocator_heap_arenas", "Pooled heap arenas.", pooled.numHeapArenas());
+            gauge(out, "netty_allocator_direct_arenas", "Pooled direct arenas.", pooled.numDirectArenas());
+            gauge(out, "netty_allocator_thread_local_caches", "Thread-local allocator caches.",
+                    pooled.numThreadLocalCaches());
+            gauge(out, "netty_allocator_chunk_size_bytes", "Size of one pool chunk.", pooled.chunkSize());
+        }
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, long value) {
+        sample(out, name, help, "gauge", value);
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        sample(out, name, help, "counter", value);
+    }
+
+    private static void sample(StringBuilder out, String name, String help, String type, long value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n')
+                .append("# TYPE ").append(name).append(' ').append(type).append('\n')
+                .append(name).append(' ').append(value).append('\n');
+    }
+
+    private static String escape(String labelValue) {
+        return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static int methodIndex(HttpMethod method) {
+        if (HttpMethod.GET.equals(method)) {
+            return 0;
+        } else if (HttpMethod.POST.equals(method)) {
+            return 1;
+        } else if (HttpMethod.PUT.equals(method)) {
+            return 2;
+        } else if (HttpMethod.DELETE.equals(method)) {
+            return 3;
+        }
+        return 4;
+    }
+}
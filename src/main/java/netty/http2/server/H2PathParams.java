@@ -0,0 +1,82 @@
+package netty.http2.server;
+
+import io.netty.handler.codec.http.QueryStringDecoder;
+
+import java.util.Arrays;
+
+/**
+ * Path parameters captured by {@link H2Router} for one request, e.g. {@code id} for the template
+ * {@code /users/:id}. Matching only records offsets into the request path; values are cut out and
+ * percent-decoded when they are asked for.
+ */
+public final class H2PathParams {
+    private static final String[] NO_NAMES = new String[0];
+    private static final int[] NO_OFFSETS = new int[0];
+    /**
+     * Shared by every request while no template captures parameters; it never holds any.
+     */
+    static final H2PathParams EMPTY = new H2PathParams(0);
+
+    private String path;
+    private String[] names;
+    private int[] starts;
+    private int[] ends;
+    private int size;
+
+    H2PathParams(int capacity) {
+        this.names = capacity == 0 ? NO_NAMES : new String[capacity];
+        this.starts = capacity == 0 ? NO_OFFSETS : new int[capacity];
+        this.ends = capacity == 0 ? NO_OFFSETS : new int[capacity];
+    }
+
+    /**
+     * @param name parameter name as written in the template, without the leading {@code :} or {@code *}
+     * @return the decoded value, or {@code null} if the matched route has no such parameter
+     */
+    public String get(String name) {
+        for (int i = 0; i < size; i++) {
+            if (names[i].equals(name)) {
+                return QueryStringDecoder.decodeComponent(path.substring(starts[i], ends[i]));
+            }
+        }
+        return null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String getName(int index) {
+        return names[index];
+    }
+
+    public String getValue(int index) {
+        return QueryStringDecoder.decodeComponent(path.substring(starts[index], ends[index]));
+    }
+
+    void reset(String path) {
+        this.path = path;
+        this.size = 0;
+    }
+
+    void add(String name, int start, int end) {
+        if (size == names.length) {
+            int capacity = Math.max(4, size * 2);
+            names = Arrays.copyOf(names, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+        }
+        names[size] = name;
+        starts[size] = start;
+        ends[size] = end;
+        size++;
+    }
+
+    int mark() {
+        return size;
+    }
+
+    void truncate(int mark) {
+        size = mark;
+    }
+}
@@ -0,0 +1,58 @@
+package netty.http2.server;
+
+import io.netty.handler.codec.http.QueryStringDecoder;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Query string parameters of a request. The query is only parsed and percent-decoded the first time a
+ * parameter is asked for, so handlers that never look at it pay nothing.
+ */
+public final class H2QueryParams {
+    private final String path;
+    private Map<String, List<String>> parameters;
+
+    H2QueryParams(String path) {
+        this.path = path;
+    }
+
+    /**
+     * @return the first value of {@code name}, or {@code null}
+     */
+    public String get(String name) {
+        List<String> values = parameters().get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    /**
+     * @return every value of {@code name}, empty if absent
+     */
+    public List<String> getAll(String name) {
+        List<String> values = parameters().get(name);
+        return values == null ? Collections.<String>emptyList() : Collections.unmodifiableList(values);
+    }
+
+    public boolean contains(String name) {
+        return parameters().containsKey(name);
+    }
+
+    public Set<String> names() {
+        return Collections.unmodifiableSet(parameters().keySet());
+    }
+
+    public boolean isEmpty() {
+        return parameters().isEmpty();
+    }
+
+    private Map<String, List<String>> parameters() {
+        if (parameters == null) {
+            parameters = path.indexOf('?') < 0
+                    ? Collections.<String, List<String>>emptyMap()
+                    : new QueryStringDecoder(path).parameters();
+        }
+        return parameters;
+    }
+}
@@ -0,0 +1,211 @@
+package netty.http2.server;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http2.Http2Headers;
+import io.netty.util.CharsetUtil;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * State of a single HTTP/2 request stream. {@link Http2Handler} keeps one instance per open stream, so
+ * concurrent streams multiplexed over the same connection never share request data.
+ */
+public final class H2Request {
+    private final int streamId;
+    private final ChannelHandlerContext ctx;
+    private final HttpMethod httpMethod;
+    private final String context;
+    private final Http2Headers headers;
+    private final H2RequestHeaders requestHeaders;
+    private final H2QueryParams queryParams;
+    private final long startNanos;
+    private HashMap<String, String> headersMap;
+    private HashMap<String, String> queryParamsMap;
+    private H2Route route;
+    private H2PathParams pathParams;
+    private FullHttpRequest fullHttpRequest;
+    private CompositeByteBuf content;
+    private H2RequestBody body;
+    private H2RequestBodyListener bodyListener;
+    private String cacheKey;
+
+    H2Request(int streamId, ChannelHandlerContext ctx, HttpMethod httpMethod, String context, String path,
+              Http2Headers headers) {
+        this.streamId = streamId;
+        this.ctx = ctx;
+        this.httpMethod = httpMethod;
+        this.context = context;
+        this.headers = headers;
+        this.requestHeaders = new H2RequestHeaders(headers);
+        this.queryParams = new H2QueryParams(path);
+        this.startNanos = System.nanoTime();
+    }
+
+    public int getStreamId() {
+        return streamId;
+    }
+
+    public ChannelHandlerContext getChannelHandlerContext() {
+        return ctx;
+    }
+
+    public HttpMethod getHttpMethod() {
+        return httpMethod;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} when the request HEADERS were read
+     */
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    /**
+     * @return the request path without the query string
+     */
+    public String getContext() {
+        return context;
+    }
+
+    public Http2Headers getHeaders() {
+        return headers;
+    }
+
+    /**
+     * @return read-only view of the request headers
+     */
+    public H2RequestHeaders getRequestHeaders() {
+        return requestHeaders;
+    }
+
+    /**
+     * @return lazily decoded query string parameters
+     */
+    public H2QueryParams getQueryParams() {
+        return queryParams;
+    }
+
+    /**
+     * Legacy accessor for {@link H2ContextHandler}. Copies every header into a new map on first use; prefer
+     * {@link #getRequestHeaders()}.
+     */
+    public HashMap<String, String> getHeadersMap() {
+        if (headersMap == null) {
+            headersMap = new HashMap<>();
+            for (Map.Entry<CharSequence, CharSequence> entry : headers) {
+                headersMap.put(entry.getKey().toString(), entry.getValue().toString());
+            }
+        }
+        return headersMap;
+    }
+
+    /**
+     * Legacy accessor for {@link H2ContextHandler}, holding the first value of each parameter; prefer
+     * {@link #getQueryParams()}.
+     */
+    public HashMap<String, String> getQueryParamsMap() {
+        if (queryParamsMap == null) {
+            queryParamsMap = new HashMap<>();
+            for (String name : queryParams.names()) {
+                queryParamsMap.put(name, queryParams.get(name));
+            }
+        }
+        return queryParamsMap;
+    }
+
+    /**
+     * @return the route matched by the request path, or {@code null} if the fallback handler serves it
+     */
+    public H2Route getRoute() {
+        return route;
+    }
+
+    /**
+     * @return parameters captured by the route template, e.g. {@code id} for {@code /users/:id}
+     */
+    public H2PathParams getPathParams() {
+        return pathParams;
+    }
+
+    void setRoute(H2Route route, H2PathParams pathParams) {
+        this.route = route;
+        this.pathParams = pathParams;
+    }
+
+    /**
+     * @return the original HTTP/1.1 request for a stream created by a cleartext upgrade, {@code null} otherwise
+     */
+    public FullHttpRequest getFullHttpRequest() {
+        return fullHttpRequest;
+    }
+
+    void setFullHttpRequest(FullHttpRequest fullHttpRequest) {
+        this.fullHttpRequest = fullHttpRequest;
+    }
+
+    /**
+     * Releases the retained upgrade request and buffered body, if any. Called once the handler is done with
+     * this request.
+     */
+    void release() {
+        if (fullHttpRequest != null) {
+            fullHttpRequest.release();
+            fullHttpRequest = null;
+        }
+        if (content != null) {
+            content.release();
+            content = null;
+        }
+    }
+
+    /**
+     * @return the aggregated body decoded as UTF-8, or {@code null} if no DATA frame was received
+     */
+    String getContent() {
+        return content == null ? null : content.toString(CharsetUtil.UTF_8);
+    }
+
+    /**
+     * @return bytes of body buffered so far
+     */
+    int getContentLength() {
+        return content == null ? 0 : content.readableBytes();
+    }
+
+    void appendContent(ByteBuf data) {
+        if (content == null) {
+            // No component limit: consolidating would copy the whole body on every frame.
+            content = ctx.alloc().compositeBuffer(Integer.MAX_VALUE);
+        }
+        content.addComponent(true, data.retain());
+    }
+
+    H2RequestBody getBody() {
+        return body;
+    }
+
+    H2RequestBodyListener getBodyListener() {
+        return bodyListener;
+    }
+
+    void setBodyListener(H2RequestBody body, H2RequestBodyListener bodyListener) {
+        this.body = body;
+        this.bodyListener = bodyListener;
+    }
+
+    /**
+     * @return the {@link H2ResponseCache} key the response should be stored under, or {@code null}
+     */
+    String getCacheKey() {
+        return cacheKey;
+    }
+
+    void setCacheKey(String cacheKey) {
+        this.cacheKey = cacheKey;
+    }
+}
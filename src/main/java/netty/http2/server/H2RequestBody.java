@@ -0,0 +1,43 @@
+package netty.http2.server;
+
+import io.netty.channel.ChannelHandlerContext;
+
+/**
+ * Flow-control handle of a streamed request body, see {@link H2StreamingContextHandler}.
+ */
+public final class H2RequestBody {
+    private final ChannelHandlerContext ctx;
+    private final Http2Handler handler;
+    private final int streamId;
+    private long receivedBytes;
+
+    H2RequestBody(ChannelHandlerContext ctx, Http2Handler handler, int streamId) {
+        this.ctx = ctx;
+        this.handler = handler;
+        this.streamId = streamId;
+    }
+
+    /**
+     * Returns processed bytes to the client's flow-control window. May be called from any thread.
+     *
+     * @param numBytes number of body bytes the handler is done with
+     */
+    public void consume(int numBytes) {
+        if (ctx.executor().inEventLoop()) {
+            handler.consumeBytes(ctx, streamId, numBytes);
+        } else {
+            ctx.executor().execute(() -> handler.consumeBytes(ctx, streamId, numBytes));
+        }
+    }
+
+    /**
+     * @return body bytes received so far. Only meaningful on the event loop.
+     */
+    public long getReceivedBytes() {
+        return receivedBytes;
+    }
+
+    void onReceived(int numBytes) {
+        receivedBytes += numBytes;
+    }
+}
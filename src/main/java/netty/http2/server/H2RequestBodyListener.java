@@ -0,0 +1,29 @@
+package netty.http2.server;
+
+import io.netty.buffer.ByteBuf;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Receives the body of one request stream. All methods are called on the connection's event loop.
+ */
+public interface H2RequestBodyListener {
+    /**
+     * @param chunk content of one DATA frame. It is released when this method returns, so call
+     *              {@link ByteBuf#retain()} to keep it. Its bytes stay charged against the flow-control window
+     *              until passed to {@link H2RequestBody#consume(int)}.
+     */
+    void onData(ByteBuf chunk);
+
+    /**
+     * Called once the client has ended the stream.
+     *
+     * @return the response to write, completed on any thread
+     */
+    CompletionStage<H2Response> onEnd();
+
+    /**
+     * Called if the stream is reset or the connection closes before {@link #onEnd()}.
+     */
+    void onAbort();
+}
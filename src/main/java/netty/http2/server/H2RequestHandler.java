@@ -0,0 +1,17 @@
+package netty.http2.server;
+
+/**
+ * Synchronous request handler. Headers and query parameters are read through {@link H2Request#getRequestHeaders()}
+ * and {@link H2Request#getQueryParams()}, which are lazy views instead of per-request {@code HashMap} copies.
+ * Handlers written against the older {@link H2ContextHandler} signatures are adapted to this interface when
+ * registered.
+ */
+public interface H2RequestHandler {
+    H2Response handleGet(H2Request request);
+
+    H2Response handlePost(H2Request request, String content);
+
+    H2Response handlePut(H2Request request, String content);
+
+    H2Response handleDelete(H2Request request);
+}
@@ -0,0 +1,63 @@
+package netty.http2.server;
+
+import io.netty.handler.codec.http2.Http2Headers;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only view over the {@link Http2Headers} of a request. Values are the decoder's own {@link CharSequence}s
+ * (usually {@link io.netty.util.AsciiString}), so nothing is copied unless a handler converts a value to a
+ * {@code String}. HTTP/2 header names are lower-case and lookups are case-sensitive.
+ */
+public final class H2RequestHeaders implements Iterable<Map.Entry<CharSequence, CharSequence>> {
+    private final Http2Headers headers;
+
+    H2RequestHeaders(Http2Headers headers) {
+        this.headers = headers;
+    }
+
+    /**
+     * @return the first value of {@code name}, or {@code null}
+     */
+    public CharSequence get(CharSequence name) {
+        return headers.get(name);
+    }
+
+    /**
+     * @return the first value of {@code name} as a {@code String}, or {@code null}
+     */
+    public String getAsString(CharSequence name) {
+        CharSequence value = headers.get(name);
+        return value == null ? null : value.toString();
+    }
+
+    /**
+     * @return every value of {@code name}, in the order they were received
+     */
+    public List<CharSequence> getAll(CharSequence name) {
+        return Collections.unmodifiableList(headers.getAll(name));
+    }
+
+    public boolean contains(CharSequence name) {
+        return headers.contains(name);
+    }
+
+    public boolean contains(CharSequence name, CharSequence value) {
+        return headers.contains(name, value);
+    }
+
+    public int size() {
+        return headers.size();
+    }
+
+    /**
+     * Iterates over all entries, pseudo-headers first. Entries must not be modified.
+     */
+    @Override
+    public Iterator<Map.Entry<CharSequence, CharSequence>> iterator() {
+        return headers.iterator();
+    }
+}
@@ -1,26 +1,238 @@
 package netty.http2.server;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http2.DefaultHttp2Headers;
 import io.netty.handler.codec.http2.Http2Headers;
-import io.netty.util.CharsetUtil;
+import io.netty.handler.codec.http2.ReadOnlyHttp2Headers;
+import io.netty.util.AsciiString;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A response to one request stream.
+ * <p>
+ * Headers start out as a shared, immutable template per status and content type, and are only copied into a
+ * mutable instance when {@link #getResponseHeaders()} is called. The body is kept as given and encoded into a
+ * buffer from the channel's allocator when the response is written, so building a response allocates little
+ * more than the object itself.
+ */
 public class H2Response {
+    private static final int MIN_STATUS = 100;
+    private static final int MAX_STATUS = 599;
+    private static final AsciiString NO_CONTENT_TYPE = AsciiString.EMPTY_STRING;
+    /**
+     * Content types get a template table on first use; a handler echoing arbitrary types must not grow the map
+     * without bound, so types past this many build their headers per response instead.
+     */
+    private static final int MAX_TEMPLATE_CONTENT_TYPES = 32;
+    private static final ConcurrentMap<AsciiString, Http2Headers[]> HEADER_TEMPLATES = new ConcurrentHashMap<>();
+
+    private final int status;
+    private final Http2Headers headerTemplate;
     private Http2Headers responseHeaders;
     private ByteBuf payload;
+    private byte[] payloadBytes;
+    private CharSequence payloadText;
+    private H2ResponseProducer producer;
 
     public H2Response(int responseStatus, String payloadData) {
-        this.responseHeaders = new DefaultHttp2Headers().status(HttpResponseStatus.valueOf(responseStatus).codeAsText());
-        this.payload = Unpooled.wrappedBuffer(payloadData.getBytes(CharsetUtil.UTF_8));
+        this(responseStatus, (AsciiString) null);
+        this.payloadText = payloadData;
+    }
+
+    private H2Response(int responseStatus, AsciiString contentType) {
+        this(responseStatus, headerTemplate(responseStatus, contentType));
+    }
+
+    private H2Response(int responseStatus, Http2Headers headerTemplate) {
+        this.status = responseStatus;
+        this.headerTemplate = headerTemplate;
+    }
+
+    /**
+     * @return a response without a body
+     */
+    public static H2Response of(int responseStatus) {
+        return new H2Response(responseStatus, (AsciiString) null);
+    }
+
+    /**
+     * @param body encoded as UTF-8 when the response is written
+     */
+    public static H2Response of(int responseStatus, CharSequence body) {
+        return of(responseStatus, null, body);
+    }
+
+    public static H2Response of(int responseStatus, AsciiString contentType, CharSequence body) {
+        H2Response h2Response = new H2Response(responseStatus, contentType);
+        h2Response.payloadText = body;
+        return h2Response;
+    }
+
+    /**
+     * @param body copied into a pooled buffer when the response is written; not modified
+     */
+    public static H2Response of(int responseStatus, byte[] body) {
+        return of(responseStatus, null, body);
+    }
+
+    public static H2Response of(int responseStatus, AsciiString contentType, byte[] body) {
+        H2Response h2Response = new H2Response(responseStatus, contentType);
+        h2Response.payloadBytes = body;
+        return h2Response;
+    }
+
+    /**
+     * @param body sent as is; the response takes ownership of one reference
+     */
+    public static H2Response of(int responseStatus, ByteBuf body) {
+        return of(responseStatus, null, body);
+    }
+
+    public static H2Response of(int responseStatus, AsciiString contentType, ByteBuf body) {
+        H2Response h2Response = new H2Response(responseStatus, contentType);
+        h2Response.payload = body;
+        return h2Response;
+    }
+
+    /**
+     * Creates a response replayed from {@link H2ResponseCache}; {@code headers} are shared with the cache entry
+     * and treated as a template.
+     */
+    static H2Response cached(int responseStatus, Http2Headers headers, ByteBuf payload) {
+        H2Response h2Response = new H2Response(responseStatus, headers);
+        h2Response.payload = payload;
+        return h2Response;
+    }
+
+    /**
+     * Creates a response whose body is written in chunks by {@code producer} once the headers are sent,
+     * instead of being materialised up front.
+     */
+    public static H2Response stream(int responseStatus, H2ResponseProducer producer) {
+        H2Response h2Response = new H2Response(responseStatus, (AsciiString) null);
+        h2Response.producer = producer;
+        return h2Response;
     }
 
+    public int getStatus() {
+        if (responseHeaders == null) {
+            return status;
+        }
+        CharSequence statusText = responseHeaders.status();
+        return statusText == null ? 0 : AsciiString.of(statusText).parseInt();
+    }
+
+    /**
+     * @return mutable headers; the first call copies the shared template
+     */
     public Http2Headers getResponseHeaders() {
+        if (responseHeaders == null) {
+            responseHeaders = new DefaultHttp2Headers();
+            responseHeaders.set(headerTemplate);
+        }
         return responseHeaders;
     }
 
+    /**
+     * @return the body, or {@code null} for a streamed response. Encodes it with the default allocator if that
+     * has not happened yet.
+     */
     public ByteBuf getPayload() {
+        return producer == null ? encodePayload(ByteBufAllocator.DEFAULT) : null;
+    }
+
+    public H2ResponseProducer getProducer() {
+        return producer;
+    }
+
+    public boolean isStreaming() {
+        return producer != null;
+    }
+
+    /**
+     * @return the headers to write: the mutable copy if one was made, the shared template otherwise
+     */
+    Http2Headers headers() {
+        return responseHeaders != null ? responseHeaders : headerTemplate;
+    }
+
+    /**
+     * Encodes the body into a buffer from {@code alloc}, once.
+     */
+    ByteBuf encodePayload(ByteBufAllocator alloc) {
+        if (payload == null) {
+            if (payloadBytes != null && payloadBytes.length > 0) {
+                payload = alloc.buffer(payloadBytes.length).writeBytes(payloadBytes);
+            } else if (payloadText != null && payloadText.length() > 0) {
+                payload = alloc.buffer(ByteBufUtil.utf8Bytes(payloadText));
+                ByteBufUtil.writeUtf8(payload, payloadText);
+            } else {
+                payload = Unpooled.EMPTY_BUFFER;
+            }
+            payloadBytes = null;
+            payloadText = null;
+        }
         return payload;
     }
+
+    /**
+     * Swaps in a re-encoded body, e.g. a compressed one, and the headers describing it. Releases the old body.
+     */
+    void replacePayload(Http2Headers headers, ByteBuf payload) {
+        release();
+        this.responseHeaders = headers;
+        this.payload = payload;
+    }
+
+    /**
+     * Releases the body of a response that will not be written.
+     */
+    void release() {
+        if (payload != null) {
+            payload.release();
+            payload = null;
+        }
+        payloadBytes = null;
+        payloadText = null;
+    }
+
+    private static Http2Headers headerTemplate(int status, AsciiString contentType) {
+        if (status < MIN_STATUS || status > MAX_STATUS) {
+            return newHeaderTemplate(status, contentType);
+        }
+        AsciiString key = contentType == null ? NO_CONTENT_TYPE : contentType;
+        Http2Headers[] templates = HEADER_TEMPLATES.get(key);
+        if (templates == null) {
+            if (HEADER_TEMPLATES.size() >= MAX_TEMPLATE_CONTENT_TYPES) {
+                return newHeaderTemplate(status, contentType);
+            }
+            templates = new Http2Headers[MAX_STATUS - MIN_STATUS + 1];
+            Http2Headers[] existing = HEADER_TEMPLATES.putIfAbsent(key, templates);
+            if (existing != null) {
+                templates = existing;
+            }
+        }
+        Http2Headers template = templates[status - MIN_STATUS];
+        if (template == null) {
+            // Racing threads may both build a template; they are equal, so either one can win.
+            template = newHeaderTemplate(status, contentType);
+            templates[status - MIN_STATUS] = template;
+        }
+        return template;
+    }
+
+    private static Http2Headers newHeaderTemplate(int status, AsciiString contentType) {
+        AsciiString statusText = HttpResponseStatus.valueOf(status).codeAsText();
+        if (contentType == null || contentType.isEmpty()) {
+            return ReadOnlyHttp2Headers.serverHeaders(false, statusText);
+        }
+        return ReadOnlyHttp2Headers.serverHeaders(false, statusText, HttpHeaderNames.CONTENT_TYPE, contentType);
+    }
 }
@@ -0,0 +1,254 @@
+package netty.http2.server;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http2.Http2Headers;
+import io.netty.util.AsciiString;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory cache of successful GET responses, consulted before a route's handler runs. Only routes given a
+ * TTL with {@link Http2Server.Builder#setCacheTtl} are cached.
+ * <p>
+ * Entries are keyed on method, path, query parameters in sorted order, the configured vary headers and the
+ * negotiated content coding, and
+ * hold the response headers plus a read-only reference to the encoded body, so a hit writes the same bytes
+ * again without running the handler or copying. The entries are spread over shards by key, each with its own lock
+ * and access order, so hits on different keys rarely contend. Once the cached bodies exceed the byte budget, the
+ * shards give up their least recently used entry in turn.
+ * <p>
+ * Responses setting a cookie are never stored, and requests carrying one bypass the cache unless
+ * {@code cookie} is one of the vary headers.
+ */
+public final class H2ResponseCache {
+    private static final int ENTRY_OVERHEAD = 128;
+    private static final char FIELD_SEPARATOR = '\u0000';
+    private static final char PARAM_SEPARATOR = '\u0001';
+    // A power of two, comfortably above the number of event loops hitting the cache.
+    private static final int SHARDS = 32;
+
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final AsciiString[] varyHeaders;
+    private final boolean varyOnCookie;
+    private final Shard[] shards = new Shard[SHARDS];
+    private final AtomicLong sizeBytes = new AtomicLong();
+    private final AtomicInteger evictionCursor = new AtomicInteger();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxBytes    budget for cached bodies and keys; a single entry may use at most an eighth of it
+     * @param varyHeaders request headers whose values are part of the key, e.g. {@code accept-encoding}
+     */
+    public H2ResponseCache(long maxBytes, CharSequence... varyHeaders) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxBytes / 8;
+        this.varyHeaders = new AsciiString[varyHeaders.length];
+        for (int i = 0; i < varyHeaders.length; i++) {
+            this.varyHeaders[i] = AsciiString.of(varyHeaders[i]).toLowerCase();
+        }
+        for (int i = 0; i < SHARDS; i++) {
+            shards[i] = new Shard();
+        }
+        this.varyOnCookie = Arrays.asList(this.varyHeaders).contains(HttpHeaderNames.COOKIE);
+    }
+
+    /**
+     * @param encoding content coding negotiated for the response, so each compressed variant gets its own entry
+     * @return the cache key for {@code request}, or {@code null} if its response must not be cached
+     */
+    String key(H2Request request, AsciiString encoding) {
+        H2Route route = request.getRoute();
+        if (route == null || route.getCacheTtlNanos() <= 0 || !HttpMethod.GET.equals(request.getHttpMethod())
+                || request.getHeaders().contains(HttpHeaderNames.AUTHORIZATION)
+                // A cookie usually selects per-user content; only cache it if the key includes the cookie.
+                || !varyOnCookie && request.getHeaders().contains(HttpHeaderNames.COOKIE)) {
+            return null;
+        }
+
+        StringBuilder key = new StringBuilder(64)
+                .append(request.getHttpMethod().name()).append(FIELD_SEPARATOR)
+                .append(request.getContext()).append(FIELD_SEPARATOR);
+        H2QueryParams queryParams = request.getQueryParams();
+        if (!queryParams.isEmpty()) {
+            List<String> names = new ArrayList<>(queryParams.names());
+            Collections.sort(names);
+            for (String name : names) {
+                for (String value : queryParams.getAll(name)) {
+                    key.append(name).append('=').append(value).append(PARAM_SEPARATOR);
+                }
+            }
+        }
+        for (AsciiString header : varyHeaders) {
+            CharSequence value = request.getHeaders().get(header);
+            key.append(FIELD_SEPARATOR).append(value == null ? "" : value);
+        }
+        if (encoding != null) {
+            key.append(FIELD_SEPARATOR).append(encoding);
+        }
+        return key.toString();
+    }
+
+    /**
+     * @return a response sharing the cached body, or {@code null} on a miss or an expired entry
+     */
+    H2Response get(String key) {
+        Shard shard = shard(key);
+        synchronized (shard) {
+            Entry entry = shard.entries.get(key);
+            if (entry != null) {
+                if (System.nanoTime() - entry.expiresAtNanos < 0) {
+                    hits.increment();
+                    return H2Response.cached(entry.status, entry.headers, entry.payload.retainedDuplicate());
+                }
+                shard.entries.remove(key);
+                release(entry);
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Stores a response that is about to be written. {@code payload} is the encoded body; the cache keeps its
+     * own reference and never moves the caller's reader index.
+     */
+    void put(String key, long ttlNanos, H2Response h2Response, ByteBuf payload) {
+        int status = h2Response.getStatus();
+        long weight = ENTRY_OVERHEAD + key.length() * 2L + payload.readableBytes();
+        if (status != 200 || weight > maxEntryBytes || !isStorable(h2Response.headers())) {
+            return;
+        }
+
+        Entry entry = new Entry(status, h2Response.headers(), payload.retainedDuplicate().asReadOnly(), weight,
+                System.nanoTime() + ttlNanos);
+        Shard shard = shard(key);
+        synchronized (shard) {
+            Entry previous = shard.entries.put(key, entry);
+            if (previous != null) {
+                release(previous);
+            }
+            sizeBytes.addAndGet(weight);
+        }
+        evictWhileOverBudget();
+    }
+
+    /**
+     * Evicts the least recently used entry of one shard after another until the cache fits its budget again.
+     */
+    private void evictWhileOverBudget() {
+        int emptyShards = 0;
+        while (sizeBytes.get() > maxBytes && emptyShards < SHARDS) {
+            Shard shard = shards[evictionCursor.getAndIncrement() & (SHARDS - 1)];
+            synchronized (shard) {
+                Iterator<Entry> eldest = shard.entries.values().iterator();
+                if (!eldest.hasNext()) {
+                    emptyShards++;
+                    continue;
+                }
+                Entry evicted = eldest.next();
+                eldest.remove();
+                release(evicted);
+                evictions.increment();
+            }
+            emptyShards = 0;
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                size += shard.entries.size();
+            }
+        }
+        return size;
+    }
+
+    public long getSizeBytes() {
+        return sizeBytes.get();
+    }
+
+    /**
+     * Drops every entry and releases the cached bodies.
+     */
+    public void clear() {
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                for (Entry entry : shard.entries.values()) {
+                    release(entry);
+                }
+                shard.entries.clear();
+            }
+        }
+    }
+
+    private Shard shard(String key) {
+        int hash = key.hashCode();
+        return shards[(hash ^ hash >>> 16) & (SHARDS - 1)];
+    }
+
+    /**
+     * Releases the body of an entry already taken out of its shard.
+     */
+    private void release(Entry entry) {
+        sizeBytes.addAndGet(-entry.weight);
+        entry.payload.release();
+    }
+
+    private static boolean isStorable(Http2Headers headers) {
+        if (headers.contains(HttpHeaderNames.SET_COOKIE)) {
+            // Replaying it would hand one client's session to every other client.
+            return false;
+        }
+        CharSequence cacheControl = headers.get(HttpHeaderNames.CACHE_CONTROL);
+        return cacheControl == null || !AsciiString.containsIgnoreCase(cacheControl, HttpHeaderValues.NO_STORE)
+                && !AsciiString.containsIgnoreCase(cacheControl, HttpHeaderValues.PRIVATE);
+    }
+
+    private static final class Shard {
+        private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    private static final class Entry {
+        private final int status;
+        private final Http2Headers headers;
+        private final ByteBuf payload;
+        private final long weight;
+        private final long expiresAtNanos;
+
+        Entry(int status, Http2Headers headers, ByteBuf payload, long weight, long expiresAtNanos) {
+            this.status = status;
+            this.headers = headers;
+            this.payload = payload;
+            this.weight = weight;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+}
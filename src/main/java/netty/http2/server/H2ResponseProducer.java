@@ -0,0 +1,15 @@
+package netty.http2.server;
+
+/**
+ * Generates the body of a streamed {@link H2Response}, see {@link H2Response#stream(int, H2ResponseProducer)}.
+ */
+public interface H2ResponseProducer {
+    /**
+     * Called on the event loop right after the response HEADERS have been written. Implementations write
+     * chunks while {@link H2ResponseWriter#isWritable()} holds, park with
+     * {@link H2ResponseWriter#onWritable(Runnable)} otherwise, and finish with {@link H2ResponseWriter#end()}.
+     *
+     * @param writer writer bound to the response stream
+     */
+    void produce(H2ResponseWriter writer);
+}
@@ -0,0 +1,162 @@
+package netty.http2.server;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http2.Http2Headers;
+
+/**
+ * Writes the body of a streamed response as a sequence of DATA frames. Writes are queued in the stream's
+ * remote flow controller, so producers should check {@link #isWritable()} to keep memory bounded.
+ */
+public final class H2ResponseWriter {
+    private final ChannelHandlerContext ctx;
+    private final Http2Handler handler;
+    private final H2Request request;
+    private final int streamId;
+    private Runnable writabilityTask;
+    private Runnable closeTask;
+    private boolean closed;
+
+    H2ResponseWriter(ChannelHandlerContext ctx, Http2Handler handler, H2Request request) {
+        this.ctx = ctx;
+        this.handler = handler;
+        this.request = request;
+        this.streamId = request.getStreamId();
+    }
+
+    public int getStreamId() {
+        return streamId;
+    }
+
+    /**
+     * Must be called on the event loop.
+     *
+     * @return {@code true} if the stream's flow-control window can take more data without queueing
+     */
+    public boolean isWritable() {
+        return !closed && handler.isStreamWritable(streamId);
+    }
+
+    /**
+     * Runs {@code task} on the event loop as soon as the stream is writable again, or right away if it is
+     * writable now. Only the last registered task is kept.
+     */
+    public void onWritable(Runnable task) {
+        if (!ctx.executor().inEventLoop()) {
+            ctx.executor().execute(() -> onWritable(task));
+            return;
+        }
+        if (closed) {
+            return;
+        }
+        if (isWritable()) {
+            task.run();
+        } else {
+            writabilityTask = task;
+        }
+    }
+
+    /**
+     * Runs {@code task} on the event loop once the stream is finished, whether it ended normally or was
+     * reset. Producers use it to release resources such as open files.
+     */
+    public void onClose(Runnable task) {
+        if (!ctx.executor().inEventLoop()) {
+            ctx.executor().execute(() -> onClose(task));
+            return;
+        }
+        if (closed) {
+            task.run();
+        } else {
+            closeTask = task;
+        }
+    }
+
+    /**
+     * Writes one DATA frame. May be called from any thread; {@code data} is released once written.
+     */
+    public ChannelFuture write(ByteBuf data) {
+        return write(data, false, null);
+    }
+
+    /**
+     * Ends the stream with an empty DATA frame.
+     */
+    public ChannelFuture end() {
+        return write(Unpooled.EMPTY_BUFFER, true, null);
+    }
+
+    /**
+     * Ends the stream with a trailing HEADERS frame.
+     */
+    public ChannelFuture end(Http2Headers trailers) {
+        return write(null, true, trailers);
+    }
+
+    /**
+     * Resets the stream, e.g. when the producer fails halfway through the body.
+     */
+    public void abort() {
+        if (!ctx.executor().inEventLoop()) {
+            ctx.executor().execute(this::abort);
+            return;
+        }
+        if (!closed) {
+            handler.abortResponse(ctx, streamId);
+        }
+    }
+
+    private ChannelFuture write(ByteBuf data, boolean endStream, Http2Headers trailers) {
+        ChannelPromise promise = ctx.newPromise();
+        if (ctx.executor().inEventLoop()) {
+            write0(data, endStream, trailers, promise);
+        } else {
+            ctx.executor().execute(() -> write0(data, endStream, trailers, promise));
+        }
+        return promise;
+    }
+
+    private void write0(ByteBuf data, boolean endStream, Http2Headers trailers, ChannelPromise promise) {
+        if (closed) {
+            if (data != null) {
+                data.release();
+            }
+            promise.setFailure(new IllegalStateException("stream " + streamId + " is closed"));
+            return;
+        }
+        if (endStream) {
+            Http2Handler.recordLatencyOnWrite(request, promise);
+        }
+        handler.writeResponseData(ctx, streamId, data, trailers, endStream, promise);
+        if (endStream) {
+            close();
+        }
+    }
+
+    /**
+     * Called by {@link Http2Handler} when the stream's writability changes.
+     */
+    void writabilityChanged() {
+        Runnable task = writabilityTask;
+        if (task != null && isWritable()) {
+            writabilityTask = null;
+            task.run();
+        }
+    }
+
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        writabilityTask = null;
+        Runnable task = closeTask;
+        if (task != null) {
+            closeTask = null;
+            task.run();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package netty.http2.server;
+
+import io.netty.handler.codec.http.HttpMethod;
+
+/**
+ * Handlers registered for one path template, one table entry per HTTP method. For a given method a
+ * streaming handler takes precedence over an asynchronous one, which takes precedence over a plain
+ * {@link H2RequestHandler}.
+ */
+public final class H2Route {
+    private static final int GET = 0;
+    private static final int POST = 1;
+    private static final int PUT = 2;
+    private static final int DELETE = 3;
+    private static final int METHOD_COUNT = 4;
+
+    private final String template;
+    private final H2RequestHandler[] requestHandlers = new H2RequestHandler[METHOD_COUNT];
+    private final H2AsyncContextHandler[] asyncContextHandlers = new H2AsyncContextHandler[METHOD_COUNT];
+    private final H2StreamingContextHandler[] streamingContextHandlers = new H2StreamingContextHandler[METHOD_COUNT];
+    private long cacheTtlNanos;
+
+    H2Route(String template) {
+        this.template = template;
+    }
+
+    /**
+     * @return the template this route was registered with, e.g. {@code /users/:id}
+     */
+    public String getTemplate() {
+        return template;
+    }
+
+    public H2RequestHandler getRequestHandler(HttpMethod method) {
+        int index = methodIndex(method);
+        return index < 0 ? null : requestHandlers[index];
+    }
+
+    public H2AsyncContextHandler getAsyncContextHandler(HttpMethod method) {
+        int index = methodIndex(method);
+        return index < 0 ? null : asyncContextHandlers[index];
+    }
+
+    public H2StreamingContextHandler getStreamingContextHandler(HttpMethod method) {
+        int index = methodIndex(method);
+        return index < 0 ? null : streamingContextHandlers[index];
+    }
+
+    /**
+     * @return {@code true} if any kind of handler is registered for {@code method}
+     */
+    public boolean supports(HttpMethod method) {
+        int index = methodIndex(method);
+        return index >= 0 && (requestHandlers[index] != null || asyncContextHandlers[index] != null
+                || streamingContextHandlers[index] != null);
+    }
+
+    /**
+     * @return the methods with a handler, as the value of an {@code Allow} header, e.g. {@code GET, POST}
+     */
+    public String getAllowedMethods() {
+        StringBuilder allow = new StringBuilder();
+        for (HttpMethod method : new HttpMethod[]{HttpMethod.GET, HttpMethod.POST, HttpMethod.PUT,
+                HttpMethod.DELETE}) {
+            if (supports(method)) {
+                if (allow.length() > 0) {
+                    allow.append(", ");
+                }
+                allow.append(method.name());
+            }
+        }
+        return allow.toString();
+    }
+
+    /**
+     * @return how long GET responses of this route stay in the {@link H2ResponseCache}; 0 if not cached
+     */
+    public long getCacheTtlNanos() {
+        return cacheTtlNanos;
+    }
+
+    void setCacheTtlNanos(long cacheTtlNanos) {
+        this.cacheTtlNanos = cacheTtlNanos;
+    }
+
+    void setRequestHandler(HttpMethod method, H2RequestHandler handler) {
+        requestHandlers[checkedMethodIndex(method)] = handler;
+    }
+
+    void setAsyncContextHandler(HttpMethod method, H2AsyncContextHandler handler) {
+        asyncContextHandlers[checkedMethodIndex(method)] = handler;
+    }
+
+    void setStreamingContextHandler(HttpMethod method, H2StreamingContextHandler handler) {
+        streamingContextHandlers[checkedMethodIndex(method)] = handler;
+    }
+
+    private static int checkedMethodIndex(HttpMethod method) {
+        int index = methodIndex(method);
+        if (index < 0) {
+            throw new IllegalArgumentException("unsupported method: " + method);
+        }
+        return index;
+    }
+
+    private static int methodIndex(HttpMethod method) {
+        // HttpMethod.valueOf returns the shared constants, but methods parsed from HEADERS are new instances.
+        if (HttpMethod.GET.equals(method)) {
+            return GET;
+        } else if (HttpMethod.POST.equals(method)) {
+            return POST;
+        } else if (HttpMethod.PUT.equals(method)) {
+            return PUT;
+        } else if (HttpMethod.DELETE.equals(method)) {
+            return DELETE;
+        }
+        return -1;
+    }
+}
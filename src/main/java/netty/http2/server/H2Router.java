@@ -0,0 +1,225 @@
+package netty.http2.server;
+
+import java.util.Arrays;
+
+/**
+ * Radix tree of path templates. Templates are made of static text, named parameters ({@code /users/:id})
+ * matching one path segment, and a trailing wildcard ({@code /static/*} or {@code /static/*file}) matching the
+ * rest of the path. Static text wins over a parameter, which wins over a wildcard.
+ * <p>
+ * Lookups walk the request path once, compare characters in place and only record parameter offsets, so
+ * matching costs O(path length) and allocates nothing.
+ */
+public final class H2Router {
+    private final Node root = new Node("");
+    private int maxParams;
+
+    /**
+     * @return the route for {@code template}, created if needed
+     */
+    H2Route route(String template) {
+        if (template.isEmpty() || template.charAt(0) != '/') {
+            throw new IllegalArgumentException("path template must start with '/': " + template);
+        }
+
+        Node node = root;
+        int params = 0;
+        int i = 0;
+        while (i < template.length()) {
+            char c = template.charAt(i);
+            if (c == ':') {
+                int end = segmentEnd(template, i, template.length());
+                node = node.paramChild(template.substring(i + 1, end), template);
+                params++;
+                i = end;
+            } else if (c == '*') {
+                if (template.indexOf('/', i) >= 0) {
+                    throw new IllegalArgumentException("wildcard must end the template: " + template);
+                }
+                String name = i + 1 < template.length() ? template.substring(i + 1) : "*";
+                node = node.wildcardChild(name, template);
+                params++;
+                i = template.length();
+            } else {
+                int end = i;
+                while (end < template.length() && template.charAt(end) != ':' && template.charAt(end) != '*') {
+                    end++;
+                }
+                node = node.insertStatic(template.substring(i, end));
+                i = end;
+            }
+        }
+
+        maxParams = Math.max(maxParams, params);
+        if (node.route == null) {
+            node.route = new H2Route(template);
+        }
+        return node.route;
+    }
+
+    /**
+     * @return the most parameters any template captures, to size {@link H2PathParams}
+     */
+    int getMaxParams() {
+        return maxParams;
+    }
+
+    /**
+     * Finds the route for a request path. A query string, if present, is ignored.
+     *
+     * @param path   the {@code :path} of the request
+     * @param params receives the captured parameters; reset before matching. May be {@code null} while
+     *               {@link #getMaxParams()} is 0, as nothing is captured then
+     * @return the matching route, or {@code null}
+     */
+    public H2Route find(String path, H2PathParams params) {
+        int end = path.indexOf('?');
+        if (end < 0) {
+            end = path.length();
+        }
+        if (params != null) {
+            params.reset(path);
+        }
+        return matchChildren(root, path, 0, end, params);
+    }
+
+    private static H2Route matchStatic(Node node, String path, int pos, int end, H2PathParams params) {
+        int length = node.prefix.length();
+        if (end - pos < length || !path.regionMatches(pos, node.prefix, 0, length)) {
+            return null;
+        }
+        return matchChildren(node, path, pos + length, end, params);
+    }
+
+    private static H2Route matchChildren(Node node, String path, int pos, int end, H2PathParams params) {
+        if (pos == end) {
+            if (node.route != null) {
+                return node.route;
+            }
+            if (node.wildcard != null) {
+                params.add(node.wildcard.name, pos, end);
+                return node.wildcard.route;
+            }
+            return null;
+        }
+
+        char c = path.charAt(pos);
+        for (int i = 0; i < node.indices.length; i++) {
+            if (node.indices[i] == c) {
+                H2Route route = matchStatic(node.children[i], path, pos, end, params);
+                if (route != null) {
+                    return route;
+                }
+                break;
+            }
+        }
+
+        if (node.param != null) {
+            int segmentEnd = segmentEnd(path, pos, end);
+            if (segmentEnd > pos) {
+                int mark = params.mark();
+                params.add(node.param.name, pos, segmentEnd);
+                H2Route route = matchChildren(node.param, path, segmentEnd, end, params);
+                if (route != null) {
+                    return route;
+                }
+                params.truncate(mark);
+            }
+        }
+
+        if (node.wildcard != null) {
+            params.add(node.wildcard.name, pos, end);
+            return node.wildcard.route;
+        }
+        return null;
+    }
+
+    private static int segmentEnd(String path, int pos, int end) {
+        while (pos < end && path.charAt(pos) != '/') {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static final class Node {
+        private String prefix;
+        private char[] indices = new char[0];
+        private Node[] children = new Node[0];
+        private Node param;
+        private Node wildcard;
+        private String name;
+        private H2Route route;
+
+        Node(String prefix) {
+            this.prefix = prefix;
+        }
+
+        /**
+         * Inserts static text below this node, splitting an existing child where the text diverges.
+         */
+        Node insertStatic(String text) {
+            if (text.isEmpty()) {
+                return this;
+            }
+            for (int i = 0; i < indices.length; i++) {
+                if (indices[i] != text.charAt(0)) {
+                    continue;
+                }
+                Node child = children[i];
+                int common = commonPrefix(child.prefix, text);
+                if (common < child.prefix.length()) {
+                    Node split = new Node(child.prefix.substring(0, common));
+                    child.prefix = child.prefix.substring(common);
+                    split.addChild(child);
+                    children[i] = split;
+                    child = split;
+                }
+                return child.insertStatic(text.substring(common));
+            }
+            Node child = new Node(text);
+            addChild(child);
+            return child;
+        }
+
+        Node paramChild(String paramName, String template) {
+            if (paramName.isEmpty()) {
+                throw new IllegalArgumentException("unnamed path parameter in " + template);
+            }
+            if (param == null) {
+                param = new Node("");
+                param.name = paramName;
+            } else if (!param.name.equals(paramName)) {
+                throw new IllegalArgumentException("':" + paramName + "' in " + template
+                        + " conflicts with existing parameter ':" + param.name + "'");
+            }
+            return param;
+        }
+
+        Node wildcardChild(String wildcardName, String template) {
+            if (wildcard == null) {
+                wildcard = new Node("");
+                wildcard.name = wildcardName;
+            } else if (!wildcard.name.equals(wildcardName)) {
+                throw new IllegalArgumentException("'*" + wildcardName + "' in " + template
+                        + " conflicts with existing wildcard '*" + wildcard.name + "'");
+            }
+            return wildcard;
+        }
+
+        private void addChild(Node child) {
+            indices = Arrays.copyOf(indices, indices.length + 1);
+            indices[indices.length - 1] = child.prefix.charAt(0);
+            children = Arrays.copyOf(children, children.length + 1);
+            children[children.length - 1] = child;
+        }
+
+        private static int commonPrefix(String a, String b) {
+            int max = Math.min(a.length(), b.length());
+            int i = 0;
+            while (i < max && a.charAt(i) == b.charAt(i)) {
+                i++;
+            }
+            return i;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package netty.http2.server;
+
+import io.netty.handler.ssl.OpenSslSessionContext;
+import io.netty.handler.ssl.OpenSslSessionTicketKey;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.ScheduledFuture;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rotates the keys an OpenSSL server context uses to encrypt TLS session tickets. Tickets let a returning client
+ * resume without the server holding any per-session state, but whoever holds the key can decrypt every session it
+ * protected, so it is replaced every interval. The previous key is kept for decryption only, which lets tickets
+ * issued up to one interval before a rotation still resume.
+ */
+public final class H2SessionTicketKeys {
+    private static final Logger logger = LogManager.getLogger(H2SessionTicketKeys.class);
+
+    private final OpenSslSessionContext sessionContext;
+    private final long intervalNanos;
+    private final SecureRandom random = new SecureRandom();
+    private OpenSslSessionTicketKey current;
+    private ScheduledFuture<?> rotation;
+
+    /**
+     * @param interval how long a key encrypts new tickets; tickets stay valid for up to twice this, and never
+     *                 longer than the session timeout
+     */
+    public H2SessionTicketKeys(OpenSslSessionContext sessionContext, long interval, TimeUnit unit) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("interval (expected > 0): " + interval);
+        }
+        this.sessionContext = sessionContext;
+        this.intervalNanos = unit.toNanos(interval);
+    }
+
+    /**
+     * Installs a fresh key and schedules the rotation on {@code executor}.
+     */
+    void start(EventExecutor executor) {
+        rotate();
+        rotation = executor.scheduleAtFixedRate(this::rotate, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void stop() {
+        if (rotation != null) {
+            rotation.cancel(false);
+        }
+    }
+
+    private void rotate() {
+        OpenSslSessionTicketKey next = new OpenSslSessionTicketKey(randomBytes(OpenSslSessionTicketKey.NAME_SIZE),
+                randomBytes(OpenSslSessionTicketKey.HMAC_KEY_SIZE), randomBytes(OpenSslSessionTicketKey.AES_KEY_SIZE));
+        // The first key encrypts new tickets, the others are only tried when decrypting.
+        if (current == null) {
+            sessionContext.setTicketKeys(next);
+        } else {
+            sessionContext.setTicketKeys(next, current);
+        }
+        current = next;
+        logger.debug("Rotated session ticket key");
+    }
+
+    private byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+}
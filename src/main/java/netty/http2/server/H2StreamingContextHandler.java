@@ -0,0 +1,17 @@
+package netty.http2.server;
+
+/**
+ * Handler that receives the request body as it arrives instead of as one aggregated {@code String}. Only the
+ * bytes the handler has given back through {@link H2RequestBody#consume(int)} are returned to the client's
+ * flow-control window, so a slow consumer throttles the uploader instead of buffering its data.
+ */
+public interface H2StreamingContextHandler {
+    /**
+     * Called on the event loop once the request HEADERS have been read.
+     *
+     * @param request the request stream
+     * @param body    flow-control handle of the request body
+     * @return the listener that receives the body of this request
+     */
+    H2RequestBodyListener onRequestStart(H2Request request, H2RequestBody body);
+}
@@ -2,15 +2,24 @@ package netty.http2.server;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
 import io.netty.handler.codec.http.*;
 import io.netty.handler.codec.http2.*;
+import io.netty.util.AsciiString;
 import io.netty.util.CharsetUtil;
-import netty.http2.server.handlers.RootHandler;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 
 import static io.netty.buffer.Unpooled.copiedBuffer;
 import static io.netty.buffer.Unpooled.unreleasableBuffer;
@@ -21,15 +30,51 @@ import static io.netty.buffer.Unpooled.unreleasableBuffer;
 public final class Http2Handler extends Http2ConnectionHandler implements Http2FrameListener {
     static final ByteBuf RESPONSE_BYTES = unreleasableBuffer(copiedBuffer("Hello World", CharsetUtil.UTF_8));
     private static final Logger logger = LogManager.getLogger(Http2Handler.class);
-    private String context;
-    private FullHttpRequest fullHttpRequest;
-    private HttpMethod httpMethod;
-    private HashMap<String, String> headersMap;
-    private HashMap<String, String> queryParamsMap;
+    // Only touched from the channel's event loop, so a plain primitive map is enough.
+    private final IntObjectMap<H2Request> requests = new IntObjectHashMap<>();
+    private final IntObjectMap<H2ResponseWriter> responseWriters = new IntObjectHashMap<>();
+    private final int connectionWindowSize;
+    private long advertisedMaxConcurrentStreams;
+    private ChannelHandlerContext ctx;
 
     Http2Handler(Http2ConnectionDecoder decoder, Http2ConnectionEncoder encoder,
-                 Http2Settings initialSettings) {
+                 Http2Settings initialSettings, int connectionWindowSize) {
         super(decoder, encoder, initialSettings);
+        this.connectionWindowSize = connectionWindowSize;
+        Long maxConcurrentStreams = initialSettings.maxConcurrentStreams();
+        this.advertisedMaxConcurrentStreams = maxConcurrentStreams == null ? -1 : maxConcurrentStreams;
+        connection().addListener(new Http2ConnectionAdapter() {
+            @Override
+            public void onStreamActive(Http2Stream stream) {
+                H2Metrics metrics = ServerUtil.getMetrics();
+                if (metrics != null) {
+                    metrics.streamOpened();
+                }
+            }
+
+            @Override
+            public void onStreamClosed(Http2Stream stream) {
+                H2Metrics metrics = ServerUtil.getMetrics();
+                if (metrics != null) {
+                    metrics.streamClosed();
+                }
+            }
+
+            @Override
+            public void onStreamRemoved(Http2Stream stream) {
+                abortRequest(requests.remove(stream.id()));
+                H2ResponseWriter writer = responseWriters.remove(stream.id());
+                if (writer != null) {
+                    writer.close();
+                }
+            }
+        });
+        encoder.flowController().listener(stream -> {
+            H2ResponseWriter writer = responseWriters.get(stream.id());
+            if (writer != null) {
+                writer.writabilityChanged();
+            }
+        });
     }
 
     private Http2Headers http1HeadersToHttp2Headers(FullHttpRequest request) {
@@ -41,10 +86,6 @@ public final class Http2Handler extends Http2ConnectionHandler implements Http2F
         if (host != null) {
             http2Headers.authority(host);
         }
-
-        fullHttpRequest = request;
-
-        logger.warn("Full URI: " + request.uri() + " Method: " + request.method().asciiName());
         return http2Headers;
     }
 
@@ -57,7 +98,8 @@ public final class Http2Handler extends Http2ConnectionHandler implements Http2F
         if (evt instanceof HttpServerUpgradeHandler.UpgradeEvent) {
             HttpServerUpgradeHandler.UpgradeEvent upgradeEvent =
                     (HttpServerUpgradeHandler.UpgradeEvent) evt;
-            onHeadersRead(ctx, 1, http1HeadersToHttp2Headers(upgradeEvent.upgradeRequest()), 0, true);
+            FullHttpRequest upgradeRequest = upgradeEvent.upgradeRequest();
+            onRequestHeaders(ctx, 1, http1HeadersToHttp2Headers(upgradeRequest), upgradeRequest, true);
         }
         super.userEventTriggered(ctx, evt);
     }
@@ -70,105 +112,475 @@ public final class Http2Handler extends Http2ConnectionHandler implements Http2F
     }
 
 
-    private void sendResponse(ChannelHandlerContext ctx, int streamId, Http2Headers responseHeaders, ByteBuf payload) {
-//        logger.warn("Request URI received= " + context);
-        // Send a frame for the response status
-        logger.warn("Sending Response to Client --->> " + responseHeaders.status().toString());
-        encoder().writeHeaders(ctx, streamId, responseHeaders, 0, false, ctx.newPromise());
-        encoder().writeData(ctx, streamId, payload, 0, true, ctx.newPromise());
+    private void sendResponse(ChannelHandlerContext ctx, H2Request request, H2Response h2Response) {
+        int streamId = request.getStreamId();
+        if (connection().stream(streamId) == null) {
+            // The client reset the stream while the handler was running.
+            h2Response.release();
+            return;
+        }
+        if (!h2Response.isStreaming()) {
+            ByteBuf payload = h2Response.encodePayload(ctx.alloc());
+            payload = compressIfAccepted(ctx, request, h2Response, payload);
+            if (request.getCacheKey() != null) {
+                ServerUtil.getResponseCache().put(request.getCacheKey(), request.getRoute().getCacheTtlNanos(),
+                        h2Response, payload);
+            }
+            logAccess(ctx, request, h2Response);
+            encoder().writeHeaders(ctx, streamId, h2Response.headers(), 0, false, ctx.newPromise());
+            ChannelPromise promise = ctx.newPromise();
+            recordLatencyOnWrite(request, promise);
+            encoder().writeData(ctx, streamId, payload, 0, true, promise);
+            return;
+        }
+
+        logAccess(ctx, request, h2Response);
+        encoder().writeHeaders(ctx, streamId, h2Response.headers(), 0, false, ctx.newPromise());
+        H2ResponseWriter writer = new H2ResponseWriter(ctx, this, request);
+        responseWriters.put(streamId, writer);
+        try {
+            h2Response.getProducer().produce(writer);
+        } catch (Exception e) {
+            logger.error("Response producer failed on stream " + streamId, e);
+            abortResponse(ctx, streamId);
+        }
+    }
+
+    private static AsciiString negotiateEncoding(H2Request request) {
+        return ServerUtil.getCompression() == null ? null
+                : H2Compression.negotiate(request.getHeaders().get(HttpHeaderNames.ACCEPT_ENCODING));
+    }
+
+    /**
+     * @return the body to write: compressed if the client accepts it and the response qualifies, otherwise
+     * {@code payload} unchanged
+     */
+    private static ByteBuf compressIfAccepted(ChannelHandlerContext ctx, H2Request request, H2Response h2Response,
+                                              ByteBuf payload) {
+        H2Compression compression = ServerUtil.getCompression();
+        if (compression == null || !compression.isCompressible(h2Response.headers(), payload.readableBytes())) {
+            return payload;
+        }
+        AsciiString encoding = negotiateEncoding(request);
+        if (encoding == null) {
+            return payload;
+        }
+        try {
+            ByteBuf compressed = compression.compress(payload, encoding, ctx.alloc());
+            h2Response.replacePayload(H2Compression.compressedHeaders(h2Response.headers(), encoding), compressed);
+            return compressed;
+        } catch (IOException e) {
+            logger.warn("Failed to compress response on stream " + request.getStreamId(), e);
+            return payload;
+        }
+    }
+
+    private static void logAccess(ChannelHandlerContext ctx, H2Request request, H2Response h2Response) {
+        H2AccessLog accessLog = ServerUtil.getAccessLog();
+        if (accessLog == null) {
+            return;
+        }
+        int status = h2Response.getStatus();
+        if (accessLog.isEnabled(status)) {
+            long bytes = h2Response.isStreaming() ? -1 : h2Response.getPayload().readableBytes();
+            accessLog.log(ctx.channel().remoteAddress(), request.getStreamId(), request.getHttpMethod().name(),
+                    request.getContext(), status, bytes, System.nanoTime() - request.getStartNanos());
+        }
+    }
+
+    /**
+     * Records the request's latency once the last frame of its response, written with {@code promise}, has
+     * gone out.
+     */
+    static void recordLatencyOnWrite(H2Request request, ChannelPromise promise) {
+        H2Metrics metrics = ServerUtil.getMetrics();
+        if (metrics != null) {
+            promise.addListener(future -> {
+                if (future.isSuccess()) {
+                    metrics.recordLatency(request);
+                }
+            });
+        }
+    }
+
+    boolean isStreamWritable(int streamId) {
+        Http2Stream stream = connection().stream(streamId);
+        return stream != null && encoder().flowController().isWritable(stream);
+    }
+
+    /**
+     * Writes a chunk or the end of a streamed response. Called by {@link H2ResponseWriter} on the event loop.
+     */
+    void writeResponseData(ChannelHandlerContext ctx, int streamId, ByteBuf data, Http2Headers trailers,
+                           boolean endStream, ChannelPromise promise) {
+        if (connection().stream(streamId) == null) {
+            if (data != null) {
+                data.release();
+            }
+            promise.setFailure(new IllegalStateException("stream " + streamId + " is closed"));
+            return;
+        }
+        if (endStream) {
+            responseWriters.remove(streamId);
+        }
+        if (trailers != null) {
+            encoder().writeHeaders(ctx, streamId, trailers, 0, true, promise);
+        } else {
+            encoder().writeData(ctx, streamId, data, 0, endStream, promise);
+        }
+        flush(ctx);
+    }
+
+    void abortResponse(ChannelHandlerContext ctx, int streamId) {
+        H2ResponseWriter writer = responseWriters.remove(streamId);
+        if (writer != null) {
+            writer.close();
+        }
+        resetStream(ctx, streamId, Http2Error.INTERNAL_ERROR.code(), ctx.newPromise());
+        flush(ctx);
     }
 
     @Override
     public int onDataRead(ChannelHandlerContext ctx, int streamId, ByteBuf data, int padding, boolean endOfStream) {
         int processed = data.readableBytes() + padding;
-        String requestContent = data.toString(CharsetUtil.UTF_8);
+        H2Request request = requests.get(streamId);
+        if (request == null) {
+            // Stream was already answered or reset; just give the flow-control window back.
+            return processed;
+        }
 
+        H2RequestBodyListener bodyListener = request.getBodyListener();
+        if (bodyListener == null) {
+            if (data.readableBytes() > ServerUtil.getMaxRequestBodySize() - request.getContentLength()) {
+                rejectOversizedBody(ctx, request);
+                return processed;
+            }
+            request.appendContent(data);
+            if (endOfStream) {
+                onRequestComplete(ctx, request);
+            }
+            return processed;
+        }
+
+        request.getBody().onReceived(data.readableBytes());
+        try {
+            bodyListener.onData(data);
+        } catch (Exception e) {
+            logger.error("Streaming handler failed for " + request.getContext(), e);
+            abortRequest(requests.remove(streamId));
+            resetStream(ctx, streamId, Http2Error.INTERNAL_ERROR.code(), ctx.newPromise());
+            return processed;
+        }
         if (endOfStream) {
-            if (httpMethod.equals(HttpMethod.POST) || httpMethod.equals(HttpMethod.PUT)) {
-                H2Response h2Response = assignUriToHandler(context, httpMethod, fullHttpRequest, ctx, headersMap,
-                        queryParamsMap, requestContent);
+            onRequestComplete(ctx, request);
+        }
+        // The body bytes are handed back by the handler through H2RequestBody#consume.
+        return padding;
+    }
 
-                sendResponse(ctx, streamId, h2Response.getResponseHeaders(), h2Response.getPayload());
-                ServerUtil.printAllHttpHeadersAndParams(httpMethod, headersMap, queryParamsMap);
+    /**
+     * Returns bytes a streaming handler has processed to the client's flow-control window.
+     */
+    void consumeBytes(ChannelHandlerContext ctx, int streamId, int numBytes) {
+        Http2Stream stream = connection().stream(streamId);
+        if (stream == null) {
+            return;
+        }
+        try {
+            if (decoder().flowController().consumeBytes(stream, numBytes)) {
+                // A WINDOW_UPDATE was queued; flush it even if no read is in progress.
+                flush(ctx);
             }
+        } catch (Http2Exception e) {
+            onError(ctx, true, e);
+        }
+    }
+
+    /**
+     * Answers 413 as soon as a buffered body outgrows the limit, drops what was buffered and asks the client to
+     * stop sending the rest. Later DATA frames on the stream are discarded.
+     */
+    private void rejectOversizedBody(ChannelHandlerContext ctx, H2Request request) {
+        int streamId = request.getStreamId();
+        abortRequest(requests.remove(streamId));
+        sendResponse(ctx, request, new H2Response(413, "Payload Too Large\n"));
+        // Write the response out before the reset, which would otherwise discard its queued DATA.
+        flush(ctx);
+        resetStream(ctx, streamId, Http2Error.NO_ERROR.code(), ctx.newPromise());
+    }
+
+    private void abortRequest(H2Request request) {
+        if (request == null) {
+            return;
+        }
+        request.release();
+        if (request.getBodyListener() != null) {
+            request.getBodyListener().onAbort();
         }
-        return processed;
     }
 
     @Override
     public void onHeadersRead(ChannelHandlerContext ctx, int streamId,
                               Http2Headers headers, int padding, boolean endOfStream) {
-        headersMap = getHeaders(headers);
-        httpMethod = new HttpMethod(headers.method().toString());
-        context = headers.path().toString().split("\\?")[0];
-        queryParamsMap = getQueryParams(headers.path().toString());
-        logger.warn("Http Methods=> " + httpMethod.asciiName() + "\tStreamID=> " + streamId
-                + "\tQueryParams=> " + headers.path());
+        onRequestHeaders(ctx, streamId, headers, null, endOfStream);
+    }
 
-        ServerUtil.printAllHttpHeadersAndParams(httpMethod, headersMap, queryParamsMap);
+    private void onRequestHeaders(ChannelHandlerContext ctx, int streamId, Http2Headers headers,
+                                  FullHttpRequest upgradeRequest, boolean endOfStream) {
+        H2Request request = requests.get(streamId);
+        if (request != null) {
+            // Trailing HEADERS frame of a stream we already know about.
+            if (endOfStream) {
+                onRequestComplete(ctx, request);
+            }
+            return;
+        }
 
+        String path = headers.path().toString();
+        int queryStart = path.indexOf('?');
+        request = new H2Request(streamId, ctx, HttpMethod.valueOf(headers.method().toString()),
+                queryStart < 0 ? path : path.substring(0, queryStart), path, headers);
+        H2Router router = ServerUtil.getRouter();
+        if (router.getMaxParams() == 0) {
+            // No template captures anything, so requests can share one empty holder.
+            request.setRoute(router.find(path, null), H2PathParams.EMPTY);
+        } else {
+            H2PathParams pathParams = new H2PathParams(router.getMaxParams());
+            request.setRoute(router.find(path, pathParams), pathParams);
+        }
+        if (upgradeRequest != null) {
+            // The upgrade handler releases the request once this event returns.
+            request.setFullHttpRequest(upgradeRequest.retainedDuplicate());
+        }
+        requests.put(streamId, request);
+
+        H2Route route = request.getRoute();
+        H2StreamingContextHandler streamingHandler =
+                route == null ? null : route.getStreamingContextHandler(request.getHttpMethod());
+        if (streamingHandler != null) {
+            H2RequestBody body = new H2RequestBody(ctx, this, streamId);
+            try {
+                request.setBodyListener(body, streamingHandler.onRequestStart(request, body));
+            } catch (Exception e) {
+                logger.error("Streaming handler failed for " + request.getContext(), e);
+                requests.remove(streamId).release();
+                resetStream(ctx, streamId, Http2Error.INTERNAL_ERROR.code(), ctx.newPromise());
+                return;
+            }
+        }
 
         if (endOfStream) {
-            if ((httpMethod.equals(HttpMethod.GET) || httpMethod.equals(HttpMethod.DELETE))) {
-                H2Response h2Response = assignUriToHandler(context, httpMethod, fullHttpRequest, ctx, headersMap,
-                        queryParamsMap, null);
+            onRequestComplete(ctx, request);
+        }
+    }
+
+    private void onRequestComplete(ChannelHandlerContext ctx, H2Request request) {
+        requests.remove(request.getStreamId());
+
+        H2RequestBodyListener bodyListener = request.getBodyListener();
+        if (bodyListener != null) {
+            CompletionStage<H2Response> stage;
+            try {
+                stage = bodyListener.onEnd();
+            } catch (Exception e) {
+                stage = failedStage(e);
+            }
+            awaitResponse(ctx, request, stage != null ? stage : CompletableFuture.completedFuture(null));
+            return;
+        }
+
+        H2ResponseCache responseCache = ServerUtil.getResponseCache();
+        if (responseCache != null) {
+            String cacheKey = responseCache.key(request, negotiateEncoding(request));
+            if (cacheKey != null) {
+                H2Response cached = responseCache.get(cacheKey);
+                if (cached != null) {
+                    request.release();
+                    sendResponse(ctx, request, cached);
+                    return;
+                }
+                request.setCacheKey(cacheKey);
+            }
+        }
 
-                sendResponse(ctx, streamId, h2Response.getResponseHeaders(), h2Response.getPayload());
+        H2Route route = request.getRoute();
+        H2AsyncContextHandler asyncHandler =
+                route == null ? null : route.getAsyncContextHandler(request.getHttpMethod());
+        if (asyncHandler != null) {
+            invokeAsyncHandler(ctx, request, asyncHandler);
+            return;
+        }
+
+        Executor executor = ServerUtil.getDispatcher().executorFor(route == null ? null : route.getTemplate());
+        if (executor == null) {
+            sendResponse(ctx, request, invokeHandler(ctx, request));
+            return;
+        }
+
+        try {
+            executor.execute(() -> {
+                H2Response h2Response = invokeHandler(ctx, request);
+                // Always write back on the event loop that owns the connection.
+                ctx.executor().execute(() -> {
+                    sendResponse(ctx, request, h2Response);
+                    flush(ctx);
+                });
+            });
+        } catch (RejectedExecutionException e) {
+            logger.warn("Handler executor saturated, rejecting stream " + request.getStreamId());
+            request.release();
+            sendResponse(ctx, request, new H2Response(503, "Service Unavailable\n"));
+        }
+    }
+
+    private void invokeAsyncHandler(ChannelHandlerContext ctx, H2Request request, H2AsyncContextHandler handler) {
+        CompletionStage<H2Response> stage;
+        try {
+            String content = request.getContent();
+            if (content == null && request.getFullHttpRequest() != null) {
+                content = request.getFullHttpRequest().content().toString(CharsetUtil.UTF_8);
             }
+            stage = assignUriToAsyncHandler(handler, request, content == null ? "" : content);
+        } catch (Exception e) {
+            stage = failedStage(e);
         }
+        awaitResponse(ctx, request, stage);
+    }
+
+    private static CompletionStage<H2Response> failedStage(Throwable cause) {
+        CompletableFuture<H2Response> failed = new CompletableFuture<>();
+        failed.completeExceptionally(cause);
+        return failed;
+    }
+
+    private void awaitResponse(ChannelHandlerContext ctx, H2Request request, CompletionStage<H2Response> stage) {
+        PendingResponse pending = new PendingResponse(ctx, request, stage);
+        pending.timeout = ctx.executor().schedule(pending::onTimeout,
+                ServerUtil.getDispatcher().getAsyncTimeoutMillis(), TimeUnit.MILLISECONDS);
+        stage.whenComplete(pending);
     }
 
-    private HashMap<String, String> getHeaders(Http2Headers headers) {
-        HashMap<String, String> headersMap = new HashMap<>();
+    private CompletionStage<H2Response> assignUriToAsyncHandler(H2AsyncContextHandler handler, H2Request request,
+                                                                String content) {
+        HttpMethod method = request.getHttpMethod();
+        CompletionStage<H2Response> stage = null;
 
-        for (Map.Entry<CharSequence, CharSequence> entry : headers) {
-            String key = entry.getKey().toString();
-            String value = entry.getValue().toString();
-            headersMap.put(key, value);
+        if (HttpMethod.GET.equals(method)) {
+            stage = handler.handleGetAsync(request);
+        } else if (HttpMethod.POST.equals(method)) {
+            stage = handler.handlePostAsync(request, content);
+        } else if (HttpMethod.PUT.equals(method)) {
+            stage = handler.handlePutAsync(request, content);
+        } else if (HttpMethod.DELETE.equals(method)) {
+            stage = handler.handleDeleteAsync(request);
         }
 
-        this.headersMap = headersMap;
-        return headersMap;
+        return stage != null ? stage : CompletableFuture.completedFuture(null);
     }
 
-    private HashMap<String, String> getQueryParams(String pathHeader) {
-        HashMap<String, String> queryParamsMap = new HashMap<>();
-        String[] requestUriParts = pathHeader.split("\\?");
+    private H2Response invokeHandler(ChannelHandlerContext ctx, H2Request request) {
+        try {
+            String content = request.getContent();
+            if (content == null && request.getFullHttpRequest() != null) {
+                content = request.getFullHttpRequest().content().toString(CharsetUtil.UTF_8);
+            }
 
-        if (requestUriParts.length == 1) {
-            return queryParamsMap;
+            H2Response h2Response = assignUriToHandler(request, content == null ? "" : content);
+
+            return h2Response != null ? h2Response : new H2Response(501, "Not Implemented\n");
+        } catch (Exception e) {
+            logger.error("Context handler failed for " + request.getContext(), e);
+            return new H2Response(500, "Internal Server Error\n");
+        } finally {
+            request.release();
+        }
+    }
+
+    /**
+     * Writes the outcome of an {@link H2AsyncContextHandler} to its stream exactly once, whichever comes first of
+     * the stage completing or the timeout firing. Both paths run on the connection's event loop.
+     */
+    private final class PendingResponse implements BiConsumer<H2Response, Throwable> {
+        private final ChannelHandlerContext ctx;
+        private final H2Request request;
+        private final CompletionStage<H2Response> stage;
+        private ScheduledFuture<?> timeout;
+        private boolean done;
+
+        PendingResponse(ChannelHandlerContext ctx, H2Request request, CompletionStage<H2Response> stage) {
+            this.ctx = ctx;
+            this.request = request;
+            this.stage = stage;
         }
 
-        String[] queryParamParts = requestUriParts[1].split("&");
-        for (String entry : queryParamParts) {
-            String[] entryParts = entry.split("=");
-            if (entryParts.length == 2) {
-                String key = entryParts[0];
-                String value = entryParts[1];
-                queryParamsMap.put(key, value);
+        @Override
+        public void accept(H2Response h2Response, Throwable cause) {
+            if (ctx.executor().inEventLoop()) {
+                complete(h2Response, cause);
+            } else {
+                ctx.executor().execute(() -> complete(h2Response, cause));
             }
         }
 
-        return queryParamsMap;
-    }
+        void onTimeout() {
+            if (done) {
+                return;
+            }
+            logger.warn("Async handler timed out for " + request.getContext() + " on stream " + request.getStreamId());
+            if (stage instanceof CompletableFuture) {
+                ((CompletableFuture<H2Response>) stage).cancel(false);
+            }
+            finish(new H2Response(504, "Gateway Timeout\n"));
+        }
+
+        private void complete(H2Response h2Response, Throwable cause) {
+            if (done) {
+                // Timed out already; drop the late response.
+                if (h2Response != null) {
+                    h2Response.release();
+                }
+                return;
+            }
+            timeout.cancel(false);
+            if (cause != null) {
+                logger.error("Async context handler failed for " + request.getContext(), cause);
+                h2Response = new H2Response(500, "Internal Server Error\n");
+            } else if (h2Response == null) {
+                h2Response = new H2Response(501, "Not Implemented\n");
+            }
+            finish(h2Response);
+        }
 
-    private H2Response assignUriToHandler(String uri, HttpMethod method, FullHttpRequest request, ChannelHandlerContext ctx, HashMap<String, String> headersMap,
-                                          HashMap<String, String> queryParamsMap, String content) {
-//        logger.warn("+++++++++++++++++++++++++++++");
-//        logger.warn("Assigning URI to handler: --> Method: " + method.asciiName() + "\tContent: " + content);
-//        logger.warn("+++++++++++++++++++++++++++++");
+        private void finish(H2Response h2Response) {
+            done = true;
+            request.release();
+            sendResponse(ctx, request, h2Response);
+            flush(ctx);
+        }
+    }
 
-        H2ContextHandler contextHandler = ServerUtil.getContextHandlerMap().getOrDefault(uri, new RootHandler());
+    private H2Response assignUriToHandler(H2Request request, String content) {
+        HttpMethod method = request.getHttpMethod();
+        H2Route route = request.getRoute();
+        H2RequestHandler requestHandler =
+                route == null ? ServerUtil.getFallbackHandler() : route.getRequestHandler(method);
+        if (requestHandler == null) {
+            H2Response h2Response = new H2Response(405, "Method Not Allowed\n");
+            if (route != null) {
+                h2Response.getResponseHeaders().set(HttpHeaderNames.ALLOW, route.getAllowedMethods());
+            }
+            return h2Response;
+        }
         H2Response h2Response = null;
 
         if (HttpMethod.GET.equals(method)) {
-            h2Response = contextHandler.handleGet(request, ctx, headersMap, queryParamsMap);
+            h2Response = requestHandler.handleGet(request);
         } else if (HttpMethod.POST.equals(method)) {
-            h2Response = contextHandler.handlePost(request, ctx, headersMap, queryParamsMap, content);
+            h2Response = requestHandler.handlePost(request, content);
         } else if (HttpMethod.PUT.equals(method)) {
-            h2Response = contextHandler.handlePut(request, ctx, headersMap, queryParamsMap, content);
+            h2Response = requestHandler.handlePut(request, content);
         } else if (HttpMethod.DELETE.equals(method)) {
-            h2Response = contextHandler.handleDelete(request, ctx, headersMap, queryParamsMap);
+            h2Response = requestHandler.handleDelete(request);
         }
 
         return h2Response;
@@ -187,6 +599,7 @@ public final class Http2Handler extends Http2ConnectionHandler implements Http2F
 
     @Override
     public void onRstStreamRead(ChannelHandlerContext ctx, int streamId, long errorCode) {
+        abortRequest(requests.remove(streamId));
     }
 
     @Override
@@ -195,6 +608,49 @@ public final class Http2Handler extends Http2ConnectionHandler implements Http2F
 
     @Override
     public void onSettingsRead(ChannelHandlerContext ctx, Http2Settings settings) {
+        if (this.ctx != null) {
+            return;
+        }
+        // The client's first SETTINGS: our preface is out, so further connection-level frames may follow it.
+        this.ctx = ctx;
+        Http2Stream connectionStream = connection().connectionStream();
+        int windowDelta = connectionWindowSize - decoder().flowController().windowSize(connectionStream);
+        if (windowDelta > 0) {
+            try {
+                decoder().flowController().incrementWindowSize(connectionStream, windowDelta);
+            } catch (Http2Exception e) {
+                logger.warn("Cannot grow the connection window to " + connectionWindowSize, e);
+            }
+        }
+        H2ConcurrencyLimiter concurrencyLimiter = ServerUtil.getConcurrencyLimiter();
+        if (concurrencyLimiter != null) {
+            concurrencyLimiter.register(this);
+        }
+    }
+
+    @Override
+    protected void handlerRemoved0(ChannelHandlerContext ctx) throws Exception {
+        H2ConcurrencyLimiter concurrencyLimiter = ServerUtil.getConcurrencyLimiter();
+        if (concurrencyLimiter != null) {
+            concurrencyLimiter.unregister(this);
+        }
+        super.handlerRemoved0(ctx);
+    }
+
+    /**
+     * Advertises a new SETTINGS_MAX_CONCURRENT_STREAMS. Safe to call from any thread once the connection has
+     * registered with the {@link H2ConcurrencyLimiter}.
+     */
+    void updateMaxConcurrentStreams(long maxConcurrentStreams) {
+        ctx.executor().execute(() -> {
+            if (!ctx.channel().isActive() || maxConcurrentStreams == advertisedMaxConcurrentStreams) {
+                return;
+            }
+            advertisedMaxConcurrentStreams = maxConcurrentStreams;
+            encoder().writeSettings(ctx, new Http2Settings().maxConcurrentStreams(maxConcurrentStreams),
+                    ctx.newPromise());
+            flush(ctx);
+        });
     }
 
     @Override
@@ -16,6 +16,8 @@ package netty.http2.server;
  * under the License.
  */
 
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http2.*;
 
 import static io.netty.handler.logging.LogLevel.INFO;
@@ -23,10 +25,17 @@ import static io.netty.handler.logging.LogLevel.INFO;
 public final class Http2HandlerBuilder
         extends AbstractHttp2ConnectionHandlerBuilder<Http2Handler, Http2HandlerBuilder> {
 
-    private static final Http2FrameLogger logger = new Http2FrameLogger(INFO, Http2Handler.class);
+    private static final Http2FrameLogger logger = new CountingFrameLogger();
 
     public Http2HandlerBuilder() {
         frameLogger(logger);
+        // Copied because the codec keeps a reference to the settings it is given.
+        Http2Settings settings = new Http2Settings().copyFrom(ServerUtil.getHttp2Settings());
+        H2ConcurrencyLimiter concurrencyLimiter = ServerUtil.getConcurrencyLimiter();
+        if (concurrencyLimiter != null) {
+            settings.maxConcurrentStreams(concurrencyLimiter.getCurrentLimit());
+        }
+        initialSettings(settings);
     }
 
     @Override
@@ -37,8 +46,46 @@ public final class Http2HandlerBuilder
     @Override
     protected Http2Handler build(Http2ConnectionDecoder decoder, Http2ConnectionEncoder encoder,
                                  Http2Settings initialSettings) {
-        Http2Handler handler = new Http2Handler(decoder, encoder, initialSettings);
+        Http2Handler handler = new Http2Handler(decoder, encoder, initialSettings,
+                ServerUtil.getConnectionWindowSize());
         frameListener(handler);
         return handler;
     }
+
+    /**
+     * Counts RST_STREAM and GOAWAY frames for {@link H2Metrics}. The codec hands every frame it reads or writes
+     * to its frame logger, including the resets and GOAWAYs it sends on its own for protocol errors.
+     */
+    private static final class CountingFrameLogger extends Http2FrameLogger {
+        CountingFrameLogger() {
+            super(INFO, Http2Handler.class);
+        }
+
+        @Override
+        public void logRstStream(Direction direction, ChannelHandlerContext ctx, int streamId, long errorCode) {
+            H2Metrics metrics = ServerUtil.getMetrics();
+            if (metrics != null) {
+                if (direction == Direction.INBOUND) {
+                    metrics.rstReceived();
+                } else {
+                    metrics.rstSent();
+                }
+            }
+            super.logRstStream(direction, ctx, streamId, errorCode);
+        }
+
+        @Override
+        public void logGoAway(Direction direction, ChannelHandlerContext ctx, int lastStreamId, long errorCode,
+                              ByteBuf debugData) {
+            H2Metrics metrics = ServerUtil.getMetrics();
+            if (metrics != null) {
+                if (direction == Direction.INBOUND) {
+                    metrics.goAwayReceived();
+                } else {
+                    metrics.goAwaySent();
+                }
+            }
+            super.logGoAway(direction, ctx, lastStreamId, errorCode, debugData);
+        }
+    }
 }
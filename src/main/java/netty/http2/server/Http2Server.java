@@ -4,9 +4,11 @@ import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.unix.UnixChannelOption;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http2.Http2CodecUtil;
 import io.netty.handler.codec.http2.Http2SecurityUtil;
+import io.netty.handler.codec.http2.Http2Settings;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
 import io.netty.handler.ssl.*;
@@ -14,10 +16,22 @@ import io.netty.handler.ssl.ApplicationProtocolConfig.Protocol;
 import io.netty.handler.ssl.ApplicationProtocolConfig.SelectedListenerFailureBehavior;
 import io.netty.handler.ssl.ApplicationProtocolConfig.SelectorFailureBehavior;
 import io.netty.handler.ssl.util.SelfSignedCertificate;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import netty.http2.server.handlers.MetricsHandler;
+import netty.http2.server.handlers.StaticFileHandler;
+import netty.http2.transport.H2TlsProvider;
+import netty.http2.transport.H2Transport;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * An HTTP/2 Server that responds to requests with a Hello World. Once started, you can test the
@@ -25,75 +39,299 @@ import java.util.HashMap;
  */
 public final class Http2Server {
     private static final Logger logger = LogManager.getLogger(Http2Server.class);
+    private static final int ACCESS_LOG_CAPACITY = 8192;
+    private static final long LAG_PROBE_INTERVAL_MILLIS = 100;
+    private static final long DEFAULT_MAX_STREAMS = 1000;
+    private static final int MAX_HTTP_CONTENT_LENGTH = 16 * 1024;
     private final String ip;
     private final int port;
-    private final HashMap<String, H2ContextHandler> contextHandlerHashMap;
+    private final H2Router router;
     private final boolean sslSupport;
+    private final File keyCertChainFile;
+    private final File keyFile;
+    private final String keyPassword;
+    private final H2TlsProvider tlsProvider;
+    private final long sessionCacheSize;
+    private final long sessionTimeoutSeconds;
+    private final long ticketKeyRotationNanos;
+    private final H2Transport transport;
+    private final int bossThreads;
+    private final int workerThreads;
+    private final int acceptors;
+    private final H2DispatchMode dispatchMode;
+    private final int handlerThreads;
+    private final int handlerQueueSize;
+    private final HashMap<String, H2Dispatcher.PoolSize> routePoolSizes;
+    private final long asyncTimeoutMillis;
+    private final H2ResponseCache responseCache;
+    private final H2Compression compression;
+    private final Http2Settings http2Settings;
+    private final int connectionWindowSize;
+    private final int maxRequestBodySize;
+    private final int flushMaxBatch;
+    private final long flushMaxDelayNanos;
+    private final long adaptiveMinStreams;
+    private final long adaptiveLagThresholdNanos;
+    private final int adaptivePendingThreshold;
+    private final String metricsPath;
+    private final String accessLogFile;
+    private final H2AccessLog.Level accessLogLevel;
+    private final int accessLogSampleRate;
+    private final long accessLogMaxFileBytes;
+    private final int accessLogMaxFiles;
 
     public Http2Server(Builder builder) {
         this.ip = builder.ip;
         this.port = builder.port;
-        this.contextHandlerHashMap = builder.contextHandlerHashMap;
+        this.router = builder.router;
         this.sslSupport = builder.sslSupport;
+        this.keyCertChainFile = builder.keyCertChainFile;
+        this.keyFile = builder.keyFile;
+        this.keyPassword = builder.keyPassword;
+        this.tlsProvider = builder.tlsProvider;
+        this.sessionCacheSize = builder.sessionCacheSize;
+        this.sessionTimeoutSeconds = builder.sessionTimeoutSeconds;
+        this.ticketKeyRotationNanos = builder.ticketKeyRotationNanos;
+        this.transport = builder.transport;
+        this.bossThreads = builder.bossThreads;
+        this.workerThreads = builder.workerThreads;
+        this.acceptors = builder.acceptors;
+        this.dispatchMode = builder.dispatchMode;
+        this.handlerThreads = builder.handlerThreads;
+        this.handlerQueueSize = builder.handlerQueueSize;
+        this.routePoolSizes = builder.routePoolSizes;
+        this.asyncTimeoutMillis = builder.asyncTimeoutMillis;
+        this.responseCache = builder.responseCache;
+        this.compression = builder.compression;
+        this.http2Settings = builder.http2Settings;
+        this.connectionWindowSize = builder.connectionWindowSize;
+        this.maxRequestBodySize = builder.maxRequestBodySize;
+        this.flushMaxBatch = builder.flushMaxBatch;
+        this.flushMaxDelayNanos = builder.flushMaxDelayNanos;
+        this.adaptiveMinStreams = builder.adaptiveMinStreams;
+        this.adaptiveLagThresholdNanos = builder.adaptiveLagThresholdNanos;
+        this.adaptivePendingThreshold = builder.adaptivePendingThreshold;
+        this.metricsPath = builder.metricsPath;
+        this.accessLogFile = builder.accessLogFile;
+        this.accessLogLevel = builder.accessLogLevel;
+        this.accessLogSampleRate = builder.accessLogSampleRate;
+        this.accessLogMaxFileBytes = builder.accessLogMaxFileBytes;
+        this.accessLogMaxFiles = builder.accessLogMaxFiles;
     }
 
     public void startServer() throws Exception {
         // Configure SSL.
-        final SslContext sslCtx;
-        if (sslSupport) {
-            SslProvider provider = OpenSsl.isAlpnSupported() ? SslProvider.OPENSSL : SslProvider.JDK;
-            SelfSignedCertificate ssc = new SelfSignedCertificate();
-            sslCtx = SslContextBuilder.forServer(ssc.certificate(), ssc.privateKey())
-                    .sslProvider(provider)
-                    /* NOTE: the cipher filter may not include all ciphers required by the HTTP/2 specification.
-                     * Please refer to the HTTP/2 specification for cipher requirements. */
-                    .ciphers(Http2SecurityUtil.CIPHERS, SupportedCipherSuiteFilter.INSTANCE)
-                    .applicationProtocolConfig(new ApplicationProtocolConfig(
-                            Protocol.ALPN,
-                            // NO_ADVERTISE is currently the only mode supported by both OpenSsl and JDK providers.
-                            SelectorFailureBehavior.NO_ADVERTISE,
-                            // ACCEPT is currently the only mode supported by both OpenSsl and JDK providers.
-                            SelectedListenerFailureBehavior.ACCEPT,
-                            ApplicationProtocolNames.HTTP_2,
-                            ApplicationProtocolNames.HTTP_1_1))
-                    .build();
-        } else {
-            sslCtx = null;
-        }
+        final SslContext sslCtx = sslSupport ? newSslContext() : null;
 
         // Configure the server.
-        EventLoopGroup group = new NioEventLoopGroup();
+        H2Transport resolvedTransport = transport.resolve();
+        int listeners = acceptors;
+        if (listeners > 1 && resolvedTransport != H2Transport.EPOLL) {
+            logger.warn("SO_REUSEPORT acceptors need the EPOLL transport, binding a single listener on "
+                    + resolvedTransport);
+            listeners = 1;
+        }
+        // Every listening socket is registered on its own boss event loop.
+        EventLoopGroup bossGroup = resolvedTransport.newEventLoopGroup(Math.max(bossThreads, listeners),
+                "h2-boss");
+        EventLoopGroup workerGroup = resolvedTransport.newEventLoopGroup(workerThreads, "h2-worker");
+        H2Dispatcher dispatcher = new H2Dispatcher(dispatchMode, handlerThreads, handlerQueueSize, routePoolSizes,
+                asyncTimeoutMillis);
+        H2AccessLog accessLog = accessLogFile == null ? null : new H2AccessLog(accessLogFile, accessLogLevel,
+                accessLogSampleRate, ACCESS_LOG_CAPACITY, accessLogMaxFileBytes, accessLogMaxFiles);
+        H2ConcurrencyLimiter concurrencyLimiter = null;
+        if (adaptiveMinStreams > 0) {
+            Long maxStreams = http2Settings.maxConcurrentStreams();
+            concurrencyLimiter = new H2ConcurrencyLimiter(maxStreams != null ? maxStreams : DEFAULT_MAX_STREAMS,
+                    adaptiveMinStreams, adaptiveLagThresholdNanos, adaptivePendingThreshold,
+                    TimeUnit.MILLISECONDS.toNanos(LAG_PROBE_INTERVAL_MILLIS), TimeUnit.NANOSECONDS);
+        }
+        H2SessionTicketKeys ticketKeys = null;
+        if (sslCtx != null && ticketKeyRotationNanos > 0 && sslCtx.sessionContext() instanceof OpenSslSessionContext) {
+            ticketKeys = new H2SessionTicketKeys((OpenSslSessionContext) sslCtx.sessionContext(),
+                    ticketKeyRotationNanos, TimeUnit.NANOSECONDS);
+            ticketKeys.start(bossGroup.next());
+        }
+        H2Metrics metrics = null;
+        ExecutorService metricsExecutor = null;
+        if (metricsPath != null) {
+            metrics = new H2Metrics();
+            metricsExecutor = Executors.newSingleThreadExecutor(new DefaultThreadFactory("h2-metrics", true));
+            router.route(metricsPath).setAsyncContextHandler(HttpMethod.GET,
+                    new MetricsHandler(metrics, metricsExecutor));
+        }
         try {
             ServerBootstrap b = new ServerBootstrap();
             b.option(ChannelOption.SO_BACKLOG, 1024);
-            b.group(group)
-                    .channel(NioServerSocketChannel.class)
+            if (listeners > 1) {
+                b.option(UnixChannelOption.SO_REUSEPORT, true);
+            }
+            b.group(bossGroup, workerGroup)
+                    .channel(resolvedTransport.serverChannelClass())
                     .handler(new LoggingHandler(LogLevel.INFO))
-                    .childHandler(new Http2ServerInitializer(sslCtx));
+                    .childHandler(new Http2ServerInitializer(sslCtx, MAX_HTTP_CONTENT_LENGTH, flushMaxBatch,
+                            flushMaxDelayNanos));
 
             // Setting context handlers
-            ServerUtil.setContextHandlerMap(contextHandlerHashMap);
+            ServerUtil.setRouter(router);
+            ServerUtil.setDispatcher(dispatcher);
+            ServerUtil.setAccessLog(accessLog);
+            ServerUtil.setResponseCache(responseCache);
+            ServerUtil.setCompression(compression);
+            ServerUtil.setHttp2Settings(http2Settings);
+            ServerUtil.setConnectionWindowSize(connectionWindowSize);
+            ServerUtil.setMaxRequestBodySize(maxRequestBodySize);
+            ServerUtil.setConcurrencyLimiter(concurrencyLimiter);
+            ServerUtil.setMetrics(metrics);
+            if (concurrencyLimiter != null) {
+                concurrencyLimiter.start(workerGroup, dispatcher);
+            }
 
-            Channel ch = b.bind(port).sync().channel();
+            List<Channel> channels = new ArrayList<>(listeners);
+            for (int i = 0; i < listeners; i++) {
+                channels.add(b.bind(port).sync().channel());
+            }
 
+            logger.info("Listening on port " + port + " with " + listeners + " acceptor(s) using the "
+                    + resolvedTransport + " transport");
             logger.warn("Open your HTTP/2-enabled web browser and navigate to " +
                     (sslSupport ? "https" : "http") + "://" + ip + ":" + port + '/');
 
-            ch.closeFuture().sync();
+            for (Channel ch : channels) {
+                ch.closeFuture().sync();
+            }
+        } finally {
+            bossGroup.shutdownGracefully();
+            workerGroup.shutdownGracefully();
+            if (concurrencyLimiter != null) {
+                concurrencyLimiter.stop();
+            }
+            if (ticketKeys != null) {
+                ticketKeys.stop();
+            }
+            dispatcher.shutdown();
+            if (metricsExecutor != null) {
+                metricsExecutor.shutdown();
+            }
+            if (responseCache != null) {
+                responseCache.clear();
+            }
+            if (accessLog != null) {
+                accessLog.close();
+            }
+        }
+    }
+
+    private SslContext newSslContext() throws Exception {
+        H2TlsProvider provider = tlsProvider.resolve();
+        SelfSignedCertificate ssc = null;
+        SslContextBuilder builder;
+        if (keyCertChainFile != null) {
+            builder = SslContextBuilder.forServer(keyCertChainFile, keyFile, keyPassword);
+        } else {
+            logger.warn("No certificate configured, serving a freshly generated self-signed one");
+            ssc = new SelfSignedCertificate();
+            builder = SslContextBuilder.forServer(ssc.certificate(), ssc.privateKey());
+        }
+        try {
+            SslContext sslCtx = builder
+                    .sslProvider(provider.sslProvider())
+                    /* NOTE: the cipher filter may not include all ciphers required by the HTTP/2 specification.
+                     * Please refer to the HTTP/2 specification for cipher requirements. */
+                    .ciphers(Http2SecurityUtil.CIPHERS, SupportedCipherSuiteFilter.INSTANCE)
+                    .applicationProtocolConfig(new ApplicationProtocolConfig(
+                            Protocol.ALPN,
+                            // NO_ADVERTISE is currently the only mode supported by both OpenSsl and JDK providers.
+                            SelectorFailureBehavior.NO_ADVERTISE,
+                            // ACCEPT is currently the only mode supported by both OpenSsl and JDK providers.
+                            SelectedListenerFailureBehavior.ACCEPT,
+                            ApplicationProtocolNames.HTTP_2,
+                            ApplicationProtocolNames.HTTP_1_1))
+                    // 0 keeps the provider's default.
+                    .sessionCacheSize(sessionCacheSize)
+                    .sessionTimeout(sessionTimeoutSeconds)
+                    .build();
+            logger.info("TLS handshakes use " + provider.description());
+            if (ticketKeyRotationNanos > 0 && provider != H2TlsProvider.OPENSSL) {
+                logger.info("Session ticket keys are left to the JDK, rotating them needs the OpenSSL provider");
+            }
+            return sslCtx;
         } finally {
-            group.shutdownGracefully();
+            if (ssc != null) {
+                // The context holds the key material now; don't leave the temporary files around.
+                ssc.delete();
+            }
         }
     }
 
     public static class Builder {
+        private static final HttpMethod[] ROUTED_METHODS =
+                {HttpMethod.GET, HttpMethod.POST, HttpMethod.PUT, HttpMethod.DELETE};
+        private static final int STATIC_FILE_THREADS = 4;
+        private static final int STATIC_FILE_QUEUE_SIZE = 1024;
+        private static final CharSequence[] DEFAULT_COMPRESSIBLE_TYPES = {"text/", "application/json",
+                "application/javascript", "application/xml", "image/svg+xml"};
+
         private String ip;
         private int port;
-        private HashMap<String, H2ContextHandler> contextHandlerHashMap;
+        private H2Router router;
         private boolean sslSupport;
+        private File keyCertChainFile;
+        private File keyFile;
+        private String keyPassword;
+        private H2TlsProvider tlsProvider;
+        private long sessionCacheSize;
+        private long sessionTimeoutSeconds;
+        private long ticketKeyRotationNanos;
+        private H2Transport transport;
+        private int bossThreads;
+        private int workerThreads;
+        private int acceptors;
+        private H2DispatchMode dispatchMode;
+        private int handlerThreads;
+        private int handlerQueueSize;
+        private HashMap<String, H2Dispatcher.PoolSize> routePoolSizes;
+        private long asyncTimeoutMillis;
+        private H2ResponseCache responseCache;
+        private H2Compression compression;
+        private Http2Settings http2Settings;
+        private int connectionWindowSize;
+        private int maxRequestBodySize;
+        private int flushMaxBatch;
+        private long flushMaxDelayNanos;
+        private long adaptiveMinStreams;
+        private long adaptiveLagThresholdNanos;
+        private int adaptivePendingThreshold;
+        private String metricsPath;
+        private String accessLogFile;
+        private H2AccessLog.Level accessLogLevel;
+        private int accessLogSampleRate;
+        private long accessLogMaxFileBytes;
+        private int accessLogMaxFiles;
 
         private Builder() {
-            contextHandlerHashMap = new HashMap<>();
+            router = new H2Router();
             sslSupport = false;
+            tlsProvider = H2TlsProvider.AUTO;
+            ticketKeyRotationNanos = TimeUnit.HOURS.toNanos(1);
+            transport = H2Transport.AUTO;
+            bossThreads = 1;
+            workerThreads = 0;
+            acceptors = 1;
+            dispatchMode = H2DispatchMode.EVENT_LOOP;
+            handlerThreads = Runtime.getRuntime().availableProcessors() * 2;
+            handlerQueueSize = 1024;
+            routePoolSizes = new HashMap<>();
+            asyncTimeoutMillis = 30000L;
+            http2Settings = Http2Settings.defaultSettings();
+            connectionWindowSize = Http2CodecUtil.DEFAULT_WINDOW_SIZE;
+            maxRequestBodySize = 1024 * 1024;
+            flushMaxBatch = 256;
+            flushMaxDelayNanos = 0;
+            accessLogLevel = H2AccessLog.Level.INFO;
+            accessLogSampleRate = 1;
+            accessLogMaxFileBytes = 100L * 1024 * 1024;
+            accessLogMaxFiles = 5;
         }
 
         public static Builder newInstance() {
@@ -115,8 +353,359 @@ public final class Http2Server {
             return this;
         }
 
+        /**
+         * Serves this certificate chain and key instead of a self-signed certificate generated on every start.
+         *
+         * @param keyCertChainFile X.509 certificate chain in PEM format, leaf first
+         * @param keyFile          PKCS#8 private key in PEM format
+         * @param keyPassword      password of the key, or {@code null} if it is not encrypted
+         */
+        public Builder setCertificate(File keyCertChainFile, File keyFile, String keyPassword) {
+            this.keyCertChainFile = keyCertChainFile;
+            this.keyFile = keyFile;
+            this.keyPassword = keyPassword;
+            return this;
+        }
+
+        /**
+         * Selects the TLS engine. Defaults to {@link H2TlsProvider#AUTO}, which uses OpenSSL when netty-tcnative
+         * is available and the JDK engine otherwise.
+         */
+        public Builder setTlsProvider(H2TlsProvider tlsProvider) {
+            this.tlsProvider = tlsProvider;
+            return this;
+        }
+
+        /**
+         * Sizes the server-side session cache that lets returning clients resume with an abbreviated handshake.
+         * Defaults to the provider's own settings.
+         *
+         * @param maxSessions sessions kept; 0 keeps the provider default
+         * @param timeout     how long a session, cached or in a ticket, can be resumed; 0 keeps the provider default
+         */
+        public Builder setSessionCache(long maxSessions, long timeout, TimeUnit unit) {
+            this.sessionCacheSize = maxSessions;
+            this.sessionTimeoutSeconds = unit.toSeconds(timeout);
+            return this;
+        }
+
+        /**
+         * Replaces the session ticket key this often, see {@link H2SessionTicketKeys}. Defaults to one hour; 0
+         * leaves OpenSSL's random per-process key in place for the life of the server. Only applies to the
+         * OpenSSL provider.
+         */
+        public Builder setTicketKeyRotation(long interval, TimeUnit unit) {
+            this.ticketKeyRotationNanos = unit.toNanos(interval);
+            return this;
+        }
+
+        /**
+         * Selects the socket transport. Defaults to {@link H2Transport#AUTO}, which uses epoll when available
+         * and NIO otherwise.
+         */
+        public Builder setTransport(H2Transport transport) {
+            this.transport = transport;
+            return this;
+        }
+
+        /**
+         * Sizes the event loop groups. The boss group only accepts connections; the worker group runs all
+         * connection I/O and, in {@link H2DispatchMode#EVENT_LOOP} mode, the handlers too.
+         *
+         * @param bossThreads   acceptor threads, usually 1
+         * @param workerThreads I/O threads; 0 uses twice the number of cores
+         */
+        public Builder setEventLoopThreads(int bossThreads, int workerThreads) {
+            this.bossThreads = bossThreads;
+            this.workerThreads = workerThreads;
+            return this;
+        }
+
+        /**
+         * Binds {@code acceptors} listening sockets to the same port with SO_REUSEPORT, each on its own boss
+         * event loop, so the kernel spreads new connections across them instead of funnelling every accept
+         * through one thread. Needs the {@link H2Transport#EPOLL} transport (Linux 3.9+); on other transports
+         * a single socket is bound.
+         */
+        public Builder setReusePortAcceptors(int acceptors) {
+            if (acceptors < 1) {
+                throw new IllegalArgumentException("acceptors (expected >= 1): " + acceptors);
+            }
+            this.acceptors = acceptors;
+            return this;
+        }
+
+        /**
+         * Registers a handler for GET, POST, PUT and DELETE. {@code context} is a path template understood by
+         * {@link H2Router}, e.g. {@code /users/:id} or {@code /static/*}.
+         */
         public Builder addContextHandler(String context, H2ContextHandler handler) {
-            contextHandlerHashMap.put(context, handler);
+            for (HttpMethod method : ROUTED_METHODS) {
+                addContextHandler(method, context, handler);
+            }
+            return this;
+        }
+
+        /**
+         * Registers a handler written against the {@code HashMap} based signatures. Its requests pay for copying
+         * headers and query parameters into maps; prefer {@link #addRequestHandler(String, H2RequestHandler)}.
+         */
+        public Builder addContextHandler(HttpMethod method, String context, H2ContextHandler handler) {
+            router.route(context).setRequestHandler(method, new H2ContextHandlerAdapter(handler));
+            return this;
+        }
+
+        /**
+         * Registers a handler for GET, POST, PUT and DELETE that reads headers and query parameters through
+         * lazy views.
+         */
+        public Builder addRequestHandler(String context, H2RequestHandler handler) {
+            for (HttpMethod method : ROUTED_METHODS) {
+                addRequestHandler(method, context, handler);
+            }
+            return this;
+        }
+
+        public Builder addRequestHandler(HttpMethod method, String context, H2RequestHandler handler) {
+            router.route(context).setRequestHandler(method, handler);
+            return this;
+        }
+
+        /**
+         * Serves the files below {@code rootDirectory} on GET {@code mountPath/*}, see {@link StaticFileHandler}.
+         * File lookups block, so unless {@link #setRouteExecutor} was already called for {@code mountPath/*} the
+         * route gets its own pool of 4 threads.
+         */
+        public Builder addStaticFiles(String mountPath, Path rootDirectory) {
+            String template = (mountPath.endsWith("/") ? mountPath : mountPath + "/") + "*";
+            addRequestHandler(HttpMethod.GET, template, new StaticFileHandler(mountPath, rootDirectory));
+            if (!routePoolSizes.containsKey(template)) {
+                setRouteExecutor(template, STATIC_FILE_THREADS, STATIC_FILE_QUEUE_SIZE);
+            }
+            return this;
+        }
+
+        /**
+         * Registers a non-blocking handler. It takes precedence over a synchronous handler registered for the
+         * same context.
+         */
+        public Builder addAsyncContextHandler(String context, H2AsyncContextHandler handler) {
+            for (HttpMethod method : ROUTED_METHODS) {
+                addAsyncContextHandler(method, context, handler);
+            }
+            return this;
+        }
+
+        public Builder addAsyncContextHandler(HttpMethod method, String context, H2AsyncContextHandler handler) {
+            router.route(context).setAsyncContextHandler(method, handler);
+            return this;
+        }
+
+        /**
+         * Registers a handler that consumes the request body as a stream of chunks. It takes precedence over
+         * the other handler types registered for the same context.
+         */
+        public Builder addStreamingContextHandler(String context, H2StreamingContextHandler handler) {
+            for (HttpMethod method : ROUTED_METHODS) {
+                addStreamingContextHandler(method, context, handler);
+            }
+            return this;
+        }
+
+        public Builder addStreamingContextHandler(HttpMethod method, String context,
+                                                  H2StreamingContextHandler handler) {
+            router.route(context).setStreamingContextHandler(method, handler);
+            return this;
+        }
+
+        /**
+         * Enables the GET response cache. Routes still have to opt in with
+         * {@link #setCacheTtl(String, long, TimeUnit)}.
+         *
+         * @param maxBytes    memory budget for cached responses
+         * @param varyHeaders request headers that select between variants of the same path
+         */
+        public Builder setResponseCache(long maxBytes, CharSequence... varyHeaders) {
+            this.responseCache = new H2ResponseCache(maxBytes, varyHeaders);
+            return this;
+        }
+
+        /**
+         * Enables gzip/deflate compression of buffered responses for clients that accept it. Streamed responses
+         * are sent as produced.
+         *
+         * @param minSize          smallest body worth compressing, in bytes
+         * @param level            deflate level, 1 to 9
+         * @param mimeTypePrefixes Content-Type prefixes to compress; defaults to text and the common
+         *                         JSON/JavaScript/XML/SVG types when empty
+         */
+        public Builder setCompression(int minSize, int level, CharSequence... mimeTypePrefixes) {
+            this.compression = new H2Compression(minSize, level,
+                    mimeTypePrefixes.length > 0 ? mimeTypePrefixes : DEFAULT_COMPRESSIBLE_TYPES);
+            return this;
+        }
+
+        /**
+         * Caches successful GET responses of a route template for {@code ttl}. Cache hits skip the handler.
+         */
+        public Builder setCacheTtl(String context, long ttl, TimeUnit unit) {
+            router.route(context).setCacheTtlNanos(unit.toNanos(ttl));
+            return this;
+        }
+
+        /**
+         * Caps the streams a client may have open at once. Without it the server sets no limit, or
+         * 1000 when adaptive concurrency is enabled.
+         */
+        public Builder setMaxConcurrentStreams(long maxConcurrentStreams) {
+            http2Settings.maxConcurrentStreams(maxConcurrentStreams);
+            return this;
+        }
+
+        /**
+         * Sets the per-stream receive window advertised to clients. Clients on high-latency links need a
+         * window of at least bandwidth &times; round trip time to keep uploads flowing; see also
+         * {@link #setConnectionWindowSize(int)}.
+         */
+        public Builder setInitialWindowSize(int initialWindowSize) {
+            http2Settings.initialWindowSize(initialWindowSize);
+            return this;
+        }
+
+        /**
+         * Sets the connection-level receive window, shared by all streams of a connection. HTTP/2 starts it at
+         * 65535 bytes regardless of SETTINGS; the server grows it with a WINDOW_UPDATE right after the preface.
+         */
+        public Builder setConnectionWindowSize(int connectionWindowSize) {
+            if (connectionWindowSize < Http2CodecUtil.DEFAULT_WINDOW_SIZE) {
+                throw new IllegalArgumentException("connectionWindowSize (expected >= "
+                        + Http2CodecUtil.DEFAULT_WINDOW_SIZE + "): " + connectionWindowSize);
+            }
+            this.connectionWindowSize = connectionWindowSize;
+            return this;
+        }
+
+        /**
+         * Caps the request body buffered for handlers that take it in one piece; larger requests are answered with
+         * 413 Payload Too Large. Defaults to 1 MiB. Streaming handlers see the body as it arrives and are not
+         * limited.
+         */
+        public Builder setMaxRequestBodySize(int maxRequestBodySize) {
+            if (maxRequestBodySize < 0) {
+                throw new IllegalArgumentException("maxRequestBodySize (expected >= 0): " + maxRequestBodySize);
+            }
+            this.maxRequestBodySize = maxRequestBodySize;
+            return this;
+        }
+
+        public Builder setMaxFrameSize(int maxFrameSize) {
+            http2Settings.maxFrameSize(maxFrameSize);
+            return this;
+        }
+
+        public Builder setHeaderTableSize(long headerTableSize) {
+            http2Settings.headerTableSize(headerTableSize);
+            return this;
+        }
+
+        public Builder setMaxHeaderListSize(long maxHeaderListSize) {
+            http2Settings.maxHeaderListSize(maxHeaderListSize);
+            return this;
+        }
+
+        /**
+         * Lowers MAX_CONCURRENT_STREAMS on every open connection while the server is overloaded and raises it
+         * again once it recovers, so clients are pushed back at the protocol level. See
+         * {@link H2ConcurrencyLimiter}.
+         *
+         * @param minStreams       floor for the advertised limit
+         * @param lagThreshold     event loop lag considered overload; at least 2 ns
+         * @param pendingThreshold queued handler tasks considered overload; at least 2
+         */
+        public Builder setAdaptiveConcurrency(long minStreams, long lagThreshold, TimeUnit unit,
+                                              int pendingThreshold) {
+            this.adaptiveMinStreams = minStreams;
+            this.adaptiveLagThresholdNanos = unit.toNanos(lagThreshold);
+            this.adaptivePendingThreshold = pendingThreshold;
+            return this;
+        }
+
+        /**
+         * Controls how flushes are coalesced per connection, see {@link H2FlushBatcher}. By default up to 256
+         * flushes are merged within one event loop iteration.
+         *
+         * @param maxBatch held flushes after which the connection is flushed immediately; 0 disables batching
+         * @param maxDelay longest a flush issued outside a read is held
+         */
+        public Builder setFlushBatching(int maxBatch, long maxDelay, TimeUnit unit) {
+            this.flushMaxBatch = maxBatch;
+            this.flushMaxDelayNanos = unit.toNanos(maxDelay);
+            return this;
+        }
+
+        /**
+         * Collects server metrics and serves them in the Prometheus text format on GET {@code path}, e.g.
+         * {@code /metrics}. See {@link H2Metrics}.
+         */
+        public Builder setMetrics(String path) {
+            this.metricsPath = path;
+            return this;
+        }
+
+        public Builder setAsyncTimeout(long timeout, TimeUnit unit) {
+            this.asyncTimeoutMillis = unit.toMillis(timeout);
+            return this;
+        }
+
+        /**
+         * Enables the asynchronous access log.
+         *
+         * @param file       log file path
+         * @param level      which responses to log
+         * @param sampleRate log one in {@code sampleRate} successful responses
+         */
+        public Builder setAccessLog(String file, H2AccessLog.Level level, int sampleRate) {
+            this.accessLogFile = file;
+            this.accessLogLevel = level;
+            this.accessLogSampleRate = sampleRate;
+            return this;
+        }
+
+        public Builder setAccessLogRotation(long maxFileBytes, int maxFiles) {
+            this.accessLogMaxFileBytes = maxFileBytes;
+            this.accessLogMaxFiles = maxFiles;
+            return this;
+        }
+
+        /**
+         * Selects where context handlers run. Defaults to {@link H2DispatchMode#EVENT_LOOP}.
+         */
+        public Builder setDispatchMode(H2DispatchMode dispatchMode) {
+            this.dispatchMode = dispatchMode;
+            return this;
+        }
+
+        /**
+         * Sizes the shared pool used by {@link H2DispatchMode#EXECUTOR}. Requests that find the queue full
+         * are answered with 503 Service Unavailable.
+         */
+        public Builder setHandlerExecutor(int handlerThreads, int handlerQueueSize) {
+            this.handlerThreads = handlerThreads;
+            this.handlerQueueSize = handlerQueueSize;
+            return this;
+        }
+
+        /**
+         * Gives one route template its own bounded pool, so a slow route cannot starve the others. Applies in
+         * every dispatch mode. The pool is started with the server and shut down with it; calling this again for
+         * the same template replaces the sizes.
+         */
+        public Builder setRouteExecutor(String context, int threads, int queueSize) {
+            if (threads < 1 || queueSize < 1) {
+                throw new IllegalArgumentException("Invalid pool size for " + context + ": " + threads
+                        + " thread(s), queue of " + queueSize);
+            }
+            routePoolSizes.put(context, new H2Dispatcher.PoolSize(threads, queueSize));
             return this;
         }
 
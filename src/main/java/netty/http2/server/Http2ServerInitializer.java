@@ -1,6 +1,8 @@
 package netty.http2.server;
 
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
 import io.netty.channel.*;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.codec.http.HttpMessage;
@@ -16,6 +18,8 @@ import io.netty.handler.ssl.SslContext;
 import io.netty.util.AsciiString;
 import io.netty.util.ReferenceCountUtil;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * Sets up the Netty pipeline for the example server. Depending on the endpoint config, sets up the
  * pipeline for NPN or cleartext HTTP upgrade to HTTP/2.
@@ -35,21 +39,39 @@ public class Http2ServerInitializer extends ChannelInitializer<SocketChannel> {
 
     private final SslContext sslCtx;
     private final int maxHttpContentLength;
+    private final int flushMaxBatch;
+    private final long flushMaxDelayNanos;
 
     public Http2ServerInitializer(SslContext sslCtx) {
         this(sslCtx, 16 * 1024);
     }
 
     public Http2ServerInitializer(SslContext sslCtx, int maxHttpContentLength) {
+        this(sslCtx, maxHttpContentLength, 0, 0);
+    }
+
+    /**
+     * @param flushMaxBatch      see {@link H2FlushBatcher}; 0 flushes every write immediately
+     * @param flushMaxDelayNanos see {@link H2FlushBatcher}
+     */
+    public Http2ServerInitializer(SslContext sslCtx, int maxHttpContentLength, int flushMaxBatch,
+                                  long flushMaxDelayNanos) {
         if (maxHttpContentLength < 0) {
             throw new IllegalArgumentException("maxHttpContentLength (expected >= 0): " + maxHttpContentLength);
         }
         this.sslCtx = sslCtx;
         this.maxHttpContentLength = maxHttpContentLength;
+        this.flushMaxBatch = flushMaxBatch;
+        this.flushMaxDelayNanos = flushMaxDelayNanos;
     }
 
     @Override
     public void initChannel(SocketChannel ch) {
+        H2Metrics metrics = ServerUtil.getMetrics();
+        if (metrics != null) {
+            // First in the pipeline, so it counts bytes as they cross the socket, TLS records included.
+            ch.pipeline().addLast(new TrafficCounter(metrics));
+        }
         if (sslCtx != null) {
             configureSsl(ch);
         } else {
@@ -61,7 +83,10 @@ public class Http2ServerInitializer extends ChannelInitializer<SocketChannel> {
      * Configure the pipeline for TLS NPN negotiation to HTTP/2.
      */
     private void configureSsl(SocketChannel ch) {
-        ch.pipeline().addLast(sslCtx.newHandler(ch.alloc()), new Http2OrHttpHandler());
+        ch.pipeline().addLast(sslCtx.newHandler(ch.alloc()));
+        // Behind the SslHandler, so batched frames are also encrypted into fewer, larger records.
+        addFlushBatcher(ch.pipeline());
+        ch.pipeline().addLast(new Http2OrHttpHandler());
     }
 
     /**
@@ -75,6 +100,7 @@ public class Http2ServerInitializer extends ChannelInitializer<SocketChannel> {
                 new CleartextHttp2ServerUpgradeHandler(sourceCodec, upgradeHandler,
                         new Http2HandlerBuilder().build());
 
+        addFlushBatcher(p);
         p.addLast(cleartextHttp2ServerUpgradeHandler);
         p.addLast(new SimpleChannelInboundHandler<HttpMessage>() {
             @Override
@@ -91,6 +117,59 @@ public class Http2ServerInitializer extends ChannelInitializer<SocketChannel> {
         p.addLast(new UserEventLogger());
     }
 
+    private void addFlushBatcher(ChannelPipeline p) {
+        if (flushMaxBatch > 0) {
+            p.addLast(new H2FlushBatcher(flushMaxBatch, flushMaxDelayNanos, TimeUnit.NANOSECONDS));
+        }
+    }
+
+    /**
+     * Feeds connection and byte counts into {@link H2Metrics}.
+     */
+    private static final class TrafficCounter extends ChannelDuplexHandler {
+        private final H2Metrics metrics;
+
+        TrafficCounter(H2Metrics metrics) {
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) throws Exception {
+            metrics.connectionOpened();
+            super.channelActive(ctx);
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            metrics.connectionClosed();
+            super.channelInactive(ctx);
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            metrics.bytesRead(size(msg));
+            super.channelRead(ctx, msg);
+        }
+
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+            // Counted when queued for the socket, before the write consumes the buffer.
+            metrics.bytesWritten(size(msg));
+            super.write(ctx, msg, promise);
+        }
+
+        private static long size(Object msg) {
+            if (msg instanceof ByteBuf) {
+                return ((ByteBuf) msg).readableBytes();
+            } else if (msg instanceof ByteBufHolder) {
+                return ((ByteBufHolder) msg).content().readableBytes();
+            } else if (msg instanceof FileRegion) {
+                return ((FileRegion) msg).count();
+            }
+            return 0;
+        }
+    }
+
     /**
      * Class that logs any User Events triggered on this channel.
      */
@@ -1,63 +1,138 @@
 package netty.http2.server;
 
-import io.netty.handler.codec.http.HttpMethod;
-import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.handler.codec.http2.Http2CodecUtil;
+import io.netty.handler.codec.http2.Http2Settings;
+import netty.http2.server.handlers.RootHandler;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.json.JSONObject;
 
-import java.util.HashMap;
 
 public final class ServerUtil {
     private static final Logger logger = LogManager.getLogger(ServerUtil.class);
-    private static HashMap<String, H2ContextHandler> contextHandlerMap;
+    private static H2Router router = new H2Router();
+    private static H2RequestHandler fallbackHandler = new H2ContextHandlerAdapter(new RootHandler());
+    private static H2Dispatcher dispatcher = H2Dispatcher.eventLoop();
+    private static H2AccessLog accessLog;
+    private static H2ResponseCache responseCache;
+    private static H2Compression compression;
+    private static Http2Settings http2Settings = Http2Settings.defaultSettings();
+    private static int connectionWindowSize = Http2CodecUtil.DEFAULT_WINDOW_SIZE;
+    private static int maxRequestBodySize = 1024 * 1024;
+    private static H2ConcurrencyLimiter concurrencyLimiter;
+    private static H2Metrics metrics;
+
+    public static H2Router getRouter() {
+        return router;
+    }
+
+    public static void setRouter(H2Router router) {
+        ServerUtil.router = router;
+    }
+
+    /**
+     * @return the handler for paths no route matches
+     */
+    public static H2RequestHandler getFallbackHandler() {
+        return fallbackHandler;
+    }
+
+    public static void setFallbackHandler(H2RequestHandler fallbackHandler) {
+        ServerUtil.fallbackHandler = fallbackHandler;
+    }
+
+    /**
+     * @return the access log, or {@code null} if access logging is disabled
+     */
+    public static H2AccessLog getAccessLog() {
+        return accessLog;
+    }
+
+    public static void setAccessLog(H2AccessLog accessLog) {
+        ServerUtil.accessLog = accessLog;
+    }
+
+    /**
+     * @return the GET response cache, or {@code null} if caching is disabled
+     */
+    public static H2ResponseCache getResponseCache() {
+        return responseCache;
+    }
 
+    public static void setResponseCache(H2ResponseCache responseCache) {
+        ServerUtil.responseCache = responseCache;
+    }
 
-    public static HashMap<String, H2ContextHandler> getContextHandlerMap() {
-        return contextHandlerMap;
+    /**
+     * @return response compression settings, or {@code null} if responses are never compressed
+     */
+    public static H2Compression getCompression() {
+        return compression;
     }
 
-    public static void setContextHandlerMap(HashMap<String, H2ContextHandler> contextHandlerMap) {
-        ServerUtil.contextHandlerMap = contextHandlerMap;
+    public static void setCompression(H2Compression compression) {
+        ServerUtil.compression = compression;
     }
 
-    public static void printAllHttpHeadersAndParams(HttpMethod httpMethod, HashMap<String, String> headersMap, HashMap<String, String> queryParamsMap) {
-        try {
-            // Getting Headers from request
-            JSONObject headersJson = new JSONObject(headersMap);
+    /**
+     * @return the SETTINGS every new connection starts with
+     */
+    public static Http2Settings getHttp2Settings() {
+        return http2Settings;
+    }
 
-            // Getting Params from request
-            JSONObject paramsJson = new JSONObject(queryParamsMap);
+    public static void setHttp2Settings(Http2Settings http2Settings) {
+        ServerUtil.http2Settings = http2Settings;
+    }
 
-            logger.warn(("HTTP REQUEST HEADERS/PARAMS: " + new JSONObject() {{
-                put("METHOD", httpMethod.asciiName());
-                put("HEADERS", headersJson);
-                put("PARAMETERS", paramsJson);
-            }}));
+    /**
+     * @return the connection-level receive window each connection opens up to
+     */
+    public static int getConnectionWindowSize() {
+        return connectionWindowSize;
+    }
 
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+    public static void setConnectionWindowSize(int connectionWindowSize) {
+        ServerUtil.connectionWindowSize = connectionWindowSize;
+    }
 
+    /**
+     * @return the largest request body buffered for a handler that does not stream its body
+     */
+    public static int getMaxRequestBodySize() {
+        return maxRequestBodySize;
     }
 
+    public static void setMaxRequestBodySize(int maxRequestBodySize) {
+        ServerUtil.maxRequestBodySize = maxRequestBodySize;
+    }
 
-    private String[] decodePathTokens(String uri) {
-        // Need to split the original URI (instead of QueryStringDecoder#path) then decode the tokens (components),
-        // otherwise /test1/123%2F456 will not match /test1/:p1
+    /**
+     * @return the adaptive MAX_CONCURRENT_STREAMS limiter, or {@code null} if the limit is fixed
+     */
+    public static H2ConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
 
-        int qPos = uri.indexOf("?");
-        String encodedPath = (qPos >= 0) ? uri.substring(0, qPos) : uri;
+    public static void setConcurrencyLimiter(H2ConcurrencyLimiter concurrencyLimiter) {
+        ServerUtil.concurrencyLimiter = concurrencyLimiter;
+    }
 
-        String[] encodedTokens = encodedPath.split("/");
+    /**
+     * @return server metrics, or {@code null} if metrics are disabled
+     */
+    public static H2Metrics getMetrics() {
+        return metrics;
+    }
 
-        String[] decodedTokens = new String[encodedTokens.length];
-        for (int i = 0; i < encodedTokens.length; i++) {
-            String encodedToken = encodedTokens[i];
-            decodedTokens[i] = QueryStringDecoder.decodeComponent(encodedToken);
-        }
+    public static void setMetrics(H2Metrics metrics) {
+        ServerUtil.metrics = metrics;
+    }
 
-        return decodedTokens;
+    public static H2Dispatcher getDispatcher() {
+        return dispatcher;
     }
 
+    public static void setDispatcher(H2Dispatcher dispatcher) {
+        ServerUtil.dispatcher = dispatcher;
+    }
 }
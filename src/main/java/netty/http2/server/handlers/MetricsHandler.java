@@ -0,0 +1,47 @@
+package netty.http2.server.handlers;
+
+import io.netty.util.AsciiString;
+import netty.http2.server.H2AsyncContextHandler;
+import netty.http2.server.H2Metrics;
+import netty.http2.server.H2Request;
+import netty.http2.server.H2Response;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+/**
+ * Serves {@link H2Metrics} in the Prometheus text format. Rendering walks every histogram, so it runs on
+ * {@code executor} rather than on the event loop that received the scrape.
+ */
+public class MetricsHandler implements H2AsyncContextHandler {
+    private static final AsciiString CONTENT_TYPE = AsciiString.cached("text/plain; version=0.0.4; charset=utf-8");
+
+    private final H2Metrics metrics;
+    private final Executor executor;
+
+    public MetricsHandler(H2Metrics metrics, Executor executor) {
+        this.metrics = metrics;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletionStage<H2Response> handleGetAsync(H2Request request) {
+        return CompletableFuture.supplyAsync(() -> H2Response.of(200, CONTENT_TYPE, metrics.render()), executor);
+    }
+
+    @Override
+    public CompletionStage<H2Response> handlePostAsync(H2Request request, String content) {
+        return null;
+    }
+
+    @Override
+    public CompletionStage<H2Response> handlePutAsync(H2Request request, String content) {
+        return null;
+    }
+
+    @Override
+    public CompletionStage<H2Response> handleDeleteAsync(H2Request request) {
+        return null;
+    }
+}
@@ -15,18 +15,22 @@ public class RootHandler implements H2ContextHandler {
 
     @Override
     public H2Response handleGet(FullHttpRequest request, ChannelHandlerContext ctx, HashMap<String, String> headersMap, HashMap<String, String> queryParamsMap) {
-        logger.warn("Root (GET) handler called");
-        logger.warn("Headers: " + new JSONObject(headersMap));
-        logger.warn("Parameters: " + new JSONObject(queryParamsMap));
+        if (logger.isDebugEnabled()) {
+            logger.debug("Root (GET) handler called");
+            logger.debug("Headers: " + new JSONObject(headersMap));
+            logger.debug("Parameters: " + new JSONObject(queryParamsMap));
+        }
         return new H2Response(200, "GET Handling response sent (GET req)\n");
     }
 
     @Override
     public H2Response handlePost(FullHttpRequest request, ChannelHandlerContext ctx, HashMap<String, String> headersMap, HashMap<String, String> queryParamsMap, String content) {
-        logger.warn("Root (POST) handler called");
-        logger.warn("Content received: " + content);
-        logger.warn("Headers: " + new JSONObject(headersMap));
-        logger.warn("Parameters: " + new JSONObject(queryParamsMap));
+        if (logger.isDebugEnabled()) {
+            logger.debug("Root (POST) handler called");
+            logger.debug("Content received: " + content);
+            logger.debug("Headers: " + new JSONObject(headersMap));
+            logger.debug("Parameters: " + new JSONObject(queryParamsMap));
+        }
         return new H2Response(200, "POST Handling response sent (POST req)\n");
     }
 
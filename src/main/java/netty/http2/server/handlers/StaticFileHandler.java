@@ -0,0 +1,341 @@
+package netty.http2.server.handlers;
+
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.DateFormatter;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.handler.codec.http2.Http2Headers;
+import io.netty.util.internal.PlatformDependent;
+import netty.http2.server.H2Compression;
+import netty.http2.server.H2Request;
+import netty.http2.server.H2RequestHandler;
+import netty.http2.server.H2RequestHeaders;
+import netty.http2.server.H2Response;
+import netty.http2.server.H2ResponseWriter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+
+/**
+ * Serves files below a root directory. File content is sent straight from memory-mapped regions of the file,
+ * one region per DATA write, so no file data is copied onto the heap. Supports single byte ranges, ignoring
+ * other Range headers, {@code If-Modified-Since}, and sets Content-Length, Content-Type and Last-Modified. Clients
+ * accepting gzip are sent a precompressed {@code <file>.gz} next to the requested file when one is present and up
+ * to date.
+ * <p>
+ * {@link #handleGet} stats, probes and resolves files with blocking calls, so it must not run on the event loop:
+ * register it with {@code Http2Server.Builder#addStaticFiles}, which gives the route its own executor, or pair
+ * {@code addRequestHandler} with {@code setRouteExecutor} for the same template. Only mapping and writing the
+ * regions happens on the event loop, as the stream's flow control allows.
+ */
+public class StaticFileHandler implements H2RequestHandler {
+    private static final Logger logger = LogManager.getLogger(StaticFileHandler.class);
+    private static final int MAPPED_REGION_SIZE = 1024 * 1024;
+    /**
+     * Returned by {@link #parseRange} for a Range header the handler does not support or cannot parse, which is
+     * answered with the whole file as if it were absent.
+     */
+    static final long[] IGNORED_RANGE = new long[0];
+
+    private final String mountPath;
+    private final Path rootDirectory;
+    private final Path realRootDirectory;
+
+    /**
+     * @param mountPath     context the handler is registered under; it is stripped from the request path
+     * @param rootDirectory directory the remaining path is resolved against
+     */
+    public StaticFileHandler(String mountPath, Path rootDirectory) {
+        this.mountPath = mountPath.endsWith("/") ? mountPath.substring(0, mountPath.length() - 1) : mountPath;
+        this.rootDirectory = rootDirectory.toAbsolutePath().normalize();
+        this.realRootDirectory = realPath(this.rootDirectory);
+    }
+
+    @Override
+    public H2Response handleGet(H2Request request) {
+        H2RequestHeaders headersView = request.getRequestHeaders();
+        Path file = resolve(request.getHeaders().path().toString());
+        if (file == null || !Files.isRegularFile(file) || !Files.isReadable(file)) {
+            return new H2Response(404, "Not Found\n");
+        }
+
+        long length;
+        long lastModified;
+        try {
+            length = Files.size(file);
+            // HTTP dates have a resolution of one second.
+            lastModified = Files.getLastModifiedTime(file).toMillis() / 1000 * 1000;
+        } catch (IOException e) {
+            logger.error("Cannot stat " + file, e);
+            return new H2Response(500, "Internal Server Error\n");
+        }
+
+        CharSequence ifModifiedSince = headersView.get(HttpHeaderNames.IF_MODIFIED_SINCE);
+        if (ifModifiedSince != null) {
+            Date since = DateFormatter.parseHttpDate(ifModifiedSince);
+            if (since != null && since.getTime() >= lastModified) {
+                return new H2Response(304, "");
+            }
+        }
+
+        long start = 0;
+        long end = length - 1;
+        int status = 200;
+        String range = headersView.getAsString(HttpHeaderNames.RANGE);
+        if (range != null) {
+            long[] bounds = parseRange(range, length);
+            if (bounds == null) {
+                H2Response h2Response = new H2Response(416, "");
+                h2Response.getResponseHeaders().set(HttpHeaderNames.CONTENT_RANGE, "bytes */" + length);
+                return h2Response;
+            }
+            if (bounds != IGNORED_RANGE) {
+                start = bounds[0];
+                end = bounds[1];
+                status = 206;
+            }
+        }
+
+        // A precompressed sibling is only sent whole; ranges always refer to the identity encoding.
+        Path gzipFile = status == 200 && HttpHeaderValues.GZIP.equals(
+                H2Compression.negotiate(headersView.get(HttpHeaderNames.ACCEPT_ENCODING)))
+                ? gzipVariant(file, lastModified) : null;
+        Path servedFile = file;
+        if (gzipFile != null) {
+            try {
+                end = Files.size(gzipFile) - 1;
+                servedFile = gzipFile;
+            } catch (IOException e) {
+                logger.warn("Cannot stat " + gzipFile + ", sending " + file + " uncompressed", e);
+            }
+        }
+
+        Path source = servedFile;
+        long position = start;
+        long count = end - start + 1;
+        H2Response h2Response = H2Response.stream(status, writer -> sendRegions(source, position, count, writer));
+        Http2Headers headers = h2Response.getResponseHeaders();
+        headers.setLong(HttpHeaderNames.CONTENT_LENGTH, count);
+        headers.set(HttpHeaderNames.CONTENT_TYPE, contentType(file));
+        if (servedFile != file) {
+            headers.set(HttpHeaderNames.CONTENT_ENCODING, HttpHeaderValues.GZIP);
+            headers.set(HttpHeaderNames.VARY, HttpHeaderNames.ACCEPT_ENCODING);
+        }
+        headers.set(HttpHeaderNames.LAST_MODIFIED, DateFormatter.format(new Date(lastModified)));
+        headers.set(HttpHeaderNames.ACCEPT_RANGES, HttpHeaderValues.BYTES);
+        if (status == 206) {
+            headers.set(HttpHeaderNames.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+        return h2Response;
+    }
+
+    @Override
+    public H2Response handlePost(H2Request request, String content) {
+        return new H2Response(405, "Method Not Allowed\n");
+    }
+
+    @Override
+    public H2Response handlePut(H2Request request, String content) {
+        return new H2Response(405, "Method Not Allowed\n");
+    }
+
+    @Override
+    public H2Response handleDelete(H2Request request) {
+        return new H2Response(405, "Method Not Allowed\n");
+    }
+
+    private void sendRegions(Path file, long position, long count, H2ResponseWriter writer) {
+        FileChannel fileChannel;
+        try {
+            fileChannel = FileChannel.open(file, StandardOpenOption.READ);
+        } catch (IOException e) {
+            logger.error("Cannot open " + file, e);
+            writer.abort();
+            return;
+        }
+        writer.onClose(() -> closeQuietly(fileChannel));
+        new RegionPump(fileChannel, position, count, writer).run();
+    }
+
+    /**
+     * Writes mapped regions while the stream has flow-control credit and parks until it is writable again.
+     */
+    private static final class RegionPump implements Runnable {
+        private final FileChannel fileChannel;
+        private final H2ResponseWriter writer;
+        private long position;
+        private long remaining;
+
+        RegionPump(FileChannel fileChannel, long position, long count, H2ResponseWriter writer) {
+            this.fileChannel = fileChannel;
+            this.position = position;
+            this.remaining = count;
+            this.writer = writer;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (remaining > 0 && writer.isWritable()) {
+                    int size = (int) Math.min(remaining, MAPPED_REGION_SIZE);
+                    MappedByteBuffer region = fileChannel.map(FileChannel.MapMode.READ_ONLY, position, size);
+                    position += size;
+                    remaining -= size;
+                    // Unmap as soon as the frame is on the wire instead of waiting for the GC.
+                    writer.write(Unpooled.wrappedBuffer(region))
+                            .addListener(future -> PlatformDependent.freeDirectBuffer(region));
+                }
+            } catch (IOException e) {
+                logger.error("Failed to map file region", e);
+                writer.abort();
+                return;
+            }
+            if (remaining > 0) {
+                writer.onWritable(this);
+            } else {
+                writer.end();
+            }
+        }
+    }
+
+    private Path resolve(String pathHeader) {
+        // Decoded as a path, so a '+' stays a '+' instead of becoming a space as in a query.
+        String path = new QueryStringDecoder(pathHeader).path();
+        if (!path.startsWith(mountPath)) {
+            return null;
+        }
+        String relative = path.substring(mountPath.length());
+        while (relative.startsWith("/")) {
+            relative = relative.substring(1);
+        }
+
+        Path file = rootDirectory.resolve(relative).normalize();
+        // Refuse anything that escapes the root, e.g. "/../../etc/passwd", or links out of it.
+        return file.startsWith(rootDirectory) && isBelowRoot(file) ? file : null;
+    }
+
+    /**
+     * @return {@code true} if {@code file} exists and, with all symbolic links followed, is inside the root
+     */
+    private boolean isBelowRoot(Path file) {
+        try {
+            return file.toRealPath().startsWith(realRootDirectory);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static Path realPath(Path directory) {
+        try {
+            return directory.toRealPath();
+        } catch (IOException e) {
+            // Nothing can be served from a missing root; resolve() fails for every file until it exists.
+            return directory;
+        }
+    }
+
+    /**
+     * Parses a single {@code bytes=} range. Other units, multiple ranges and malformed input are ignored, as
+     * RFC 9110 allows, rather than refused.
+     *
+     * @return inclusive {start, end} offsets, {@link #IGNORED_RANGE} if the header is to be ignored, or
+     * {@code null} if the range is well-formed but cannot be satisfied
+     */
+    static long[] parseRange(String range, long length) {
+        if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) {
+            return IGNORED_RANGE;
+        }
+        String spec = range.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return IGNORED_RANGE;
+        }
+        long start;
+        long end;
+        if (dash == 0) {
+            // Suffix range: the last N bytes.
+            long suffix = parseDigits(spec.substring(1));
+            if (suffix < 0) {
+                return IGNORED_RANGE;
+            }
+            if (suffix == 0) {
+                return null;
+            }
+            start = Math.max(0, length - suffix);
+            end = length - 1;
+        } else {
+            start = parseDigits(spec.substring(0, dash));
+            end = dash == spec.length() - 1 ? Long.MAX_VALUE : parseDigits(spec.substring(dash + 1));
+            if (start < 0 || end < start) {
+                return IGNORED_RANGE;
+            }
+            end = Math.min(end, length - 1);
+        }
+        return start < length ? new long[]{start, end} : null;
+    }
+
+    /**
+     * @return the value of a non-empty string of ASCII digits, or -1 for anything else, including a sign
+     */
+    private static long parseDigits(String digits) {
+        if (digits.isEmpty()) {
+            return -1;
+        }
+        for (int i = 0; i < digits.length(); i++) {
+            char c = digits.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+        }
+        try {
+            return Long.parseLong(digits);
+        } catch (NumberFormatException e) {
+            // Longer than any file.
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * @return {@code file.gz} if it exists and is at least as new as {@code file}, otherwise {@code null}
+     */
+    private Path gzipVariant(Path file, long lastModified) {
+        Path gzipFile = file.resolveSibling(file.getFileName() + ".gz");
+        try {
+            if (Files.isRegularFile(gzipFile) && isBelowRoot(gzipFile)
+                    && Files.getLastModifiedTime(gzipFile).toMillis() >= lastModified) {
+                return gzipFile;
+            }
+        } catch (IOException ignored) {
+            // serve the uncompressed file
+        }
+        return null;
+    }
+
+    private static String contentType(Path file) {
+        try {
+            String contentType = Files.probeContentType(file);
+            if (contentType != null) {
+                return contentType;
+            }
+        } catch (IOException ignored) {
+            // fall through to the generic type
+        }
+        return HttpHeaderValues.APPLICATION_OCTET_STREAM.toString();
+    }
+
+    private static void closeQuietly(FileChannel fileChannel) {
+        try {
+            fileChannel.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close file channel", e);
+        }
+    }
+}
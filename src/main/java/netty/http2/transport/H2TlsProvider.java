@@ -0,0 +1,63 @@
+package netty.http2.transport;
+
+import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.SslProvider;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * TLS engine shared by the server and the client. The OpenSSL engine needs netty-tcnative (the build ships the
+ * statically linked BoringSSL flavour) and handshakes and encrypts at a fraction of the CPU cost of the JDK
+ * engine.
+ */
+public enum H2TlsProvider {
+    /**
+     * OpenSSL when netty-tcnative loads and supports ALPN, the JDK engine otherwise.
+     */
+    AUTO,
+    /**
+     * netty-tcnative, OpenSSL or BoringSSL. {@link #resolve()} fails instead of falling back when it is missing.
+     */
+    OPENSSL,
+    JDK;
+
+    private static final Logger logger = LogManager.getLogger(H2TlsProvider.class);
+
+    public boolean isAvailable() {
+        return this != OPENSSL || OpenSsl.isAlpnSupported();
+    }
+
+    /**
+     * @return the concrete provider to use
+     * @throws IllegalStateException if {@link #OPENSSL} was asked for and cannot be loaded
+     */
+    public H2TlsProvider resolve() {
+        switch (this) {
+            case OPENSSL:
+                if (!isAvailable()) {
+                    throw new IllegalStateException("OpenSSL with ALPN is unavailable", OpenSsl.unavailabilityCause());
+                }
+                return OPENSSL;
+            case JDK:
+                return JDK;
+            default:
+                if (OPENSSL.isAvailable()) {
+                    return OPENSSL;
+                }
+                logger.info("OpenSSL with ALPN is unavailable, using the JDK TLS engine",
+                        OpenSsl.unavailabilityCause());
+                return JDK;
+        }
+    }
+
+    public SslProvider sslProvider() {
+        return resolve() == OPENSSL ? SslProvider.OPENSSL : SslProvider.JDK;
+    }
+
+    /**
+     * @return the native library in use, e.g. {@code BoringSSL}, or {@code JDK}
+     */
+    public String description() {
+        return resolve() == OPENSSL ? OpenSsl.versionString() : "JDK " + System.getProperty("java.version");
+    }
+}
@@ -0,0 +1,118 @@
+package netty.http2.transport;
+
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.kqueue.KQueue;
+import io.netty.channel.kqueue.KQueueEventLoopGroup;
+import io.netty.channel.kqueue.KQueueServerSocketChannel;
+import io.netty.channel.kqueue.KQueueSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Socket transport shared by the server and the client. The native transports are only usable when their JNI
+ * library loads on the current platform; {@link #resolve()} falls back to NIO otherwise.
+ */
+public enum H2Transport {
+    /**
+     * Picks the best transport available: epoll on Linux, kqueue on macOS/BSD, NIO anywhere else.
+     */
+    AUTO,
+    NIO,
+    /**
+     * Linux native transport. Channels use edge-triggered mode by default.
+     */
+    EPOLL,
+    KQUEUE;
+
+    private static final Logger logger = LogManager.getLogger(H2Transport.class);
+
+    public boolean isAvailable() {
+        switch (this) {
+            case EPOLL:
+                return Epoll.isAvailable();
+            case KQUEUE:
+                return KQueue.isAvailable();
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * @return the concrete transport to use; {@link #AUTO} and unavailable native transports resolve to the
+     * best available one
+     */
+    public H2Transport resolve() {
+        if (this != AUTO) {
+            if (isAvailable()) {
+                return this;
+            }
+            logger.warn(this + " transport is unavailable, falling back", unavailabilityCause());
+        }
+        if (EPOLL.isAvailable()) {
+            return EPOLL;
+        }
+        if (KQUEUE.isAvailable()) {
+            return KQUEUE;
+        }
+        return NIO;
+    }
+
+    /**
+     * @param threads    number of event loops; 0 uses Netty's default of twice the number of cores
+     * @param threadName prefix for the event loop thread names
+     */
+    public EventLoopGroup newEventLoopGroup(int threads, String threadName) {
+        DefaultThreadFactory threadFactory = new DefaultThreadFactory(threadName);
+        switch (resolve()) {
+            case EPOLL:
+                return new EpollEventLoopGroup(threads, threadFactory);
+            case KQUEUE:
+                return new KQueueEventLoopGroup(threads, threadFactory);
+            default:
+                return new NioEventLoopGroup(threads, threadFactory);
+        }
+    }
+
+    public Class<? extends ServerChannel> serverChannelClass() {
+        switch (resolve()) {
+            case EPOLL:
+                return EpollServerSocketChannel.class;
+            case KQUEUE:
+                return KQueueServerSocketChannel.class;
+            default:
+                return NioServerSocketChannel.class;
+        }
+    }
+
+    public Class<? extends Channel> socketChannelClass() {
+        switch (resolve()) {
+            case EPOLL:
+                return EpollSocketChannel.class;
+            case KQUEUE:
+                return KQueueSocketChannel.class;
+            default:
+                return NioSocketChannel.class;
+        }
+    }
+
+    private Throwable unavailabilityCause() {
+        switch (this) {
+            case EPOLL:
+                return Epoll.unavailabilityCause();
+            case KQUEUE:
+                return KQueue.unavailabilityCause();
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package netty.http2.server;
+
+import io.netty.handler.codec.http.HttpMethod;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class H2RouterTest {
+    private H2Router router;
+    private H2PathParams params;
+
+    @Before
+    public void setUp() {
+        router = new H2Router();
+    }
+
+    private H2Route find(String path) {
+        params = new H2PathParams(router.getMaxParams());
+        return router.find(path, params);
+    }
+
+    @Test
+    public void matchesStaticTemplates() {
+        H2Route root = router.route("/");
+        H2Route status = router.route("/api/v1/status");
+        H2Route items = router.route("/api/v1/items");
+
+        assertSame(root, find("/"));
+        assertSame(status, find("/api/v1/status"));
+        assertSame(items, find("/api/v1/items?limit=10"));
+        assertEquals(0, params.size());
+    }
+
+    @Test
+    public void capturesParameters() {
+        H2Route order = router.route("/users/:id/orders/:orderId");
+
+        assertSame(order, find("/users/42/orders/a%20b"));
+        assertEquals(2, params.size());
+        assertEquals("42", params.get("id"));
+        assertEquals("a b", params.get("orderId"));
+        assertNull(params.get("missing"));
+    }
+
+    @Test
+    public void wildcardTakesTheRestOfThePath() {
+        H2Route named = router.route("/static/*file");
+        H2Route unnamed = router.route("/files/*");
+
+        assertSame(named, find("/static/css/site.css"));
+        assertEquals("css/site.css", params.get("file"));
+        assertSame(unnamed, find("/files/a/b"));
+        assertEquals("a/b", params.get("*"));
+        assertSame(named, find("/static/"));
+        assertEquals("", params.get("file"));
+    }
+
+    @Test
+    public void returnsNullOnMiss() {
+        router.route("/users/:id");
+        router.route("/api/v1/status");
+
+        assertNull(find("/api/v1"));
+        assertNull(find("/api/v1/statusx"));
+        assertNull(find("/users/"));
+        assertNull(find("/users/42/orders"));
+        assertNull(find("/unknown"));
+    }
+
+    @Test
+    public void staticWinsOverParameterWhichWinsOverWildcard() {
+        H2Route me = router.route("/users/me");
+        H2Route user = router.route("/users/:id");
+        H2Route rest = router.route("/users/*rest");
+
+        assertSame(me, find("/users/me"));
+        assertSame(user, find("/users/mel"));
+        assertSame(rest, find("/users/mel/photos"));
+    }
+
+    @Test
+    public void backtracksFromStaticToParameter() {
+        H2Route newItems = router.route("/users/new/items");
+        H2Route orders = router.route("/users/:id/orders");
+
+        assertSame(newItems, find("/users/new/items"));
+        // "new" first follows the static branch, which has no "/orders" below it.
+        assertSame(orders, find("/users/new/orders"));
+        assertEquals("new", params.get("id"));
+    }
+
+    @Test
+    public void backtrackingDropsParametersOfTheFailedBranch() {
+        router.route("/a/:x/b/c");
+        H2Route rest = router.route("/a/*rest");
+
+        assertSame(rest, find("/a/1/b/d"));
+        assertEquals(1, params.size());
+        assertEquals("rest", params.getName(0));
+        assertEquals("1/b/d", params.get("rest"));
+    }
+
+    @Test
+    public void findsWithoutParameterHolderWhenNothingIsCaptured() {
+        H2Route status = router.route("/api/v1/status");
+
+        assertSame(status, router.find("/api/v1/status", null));
+        assertNull(router.find("/api/v2/status", null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsConflictingParameterNames() {
+        router.route("/users/:id");
+        router.route("/users/:name/photos");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsWildcardBeforeTheEnd() {
+        router.route("/static/*file/more");
+    }
+
+    @Test
+    public void listsAllowedMethods() {
+        H2Route route = router.route("/items");
+        route.setRequestHandler(HttpMethod.GET, null);
+        assertEquals("", route.getAllowedMethods());
+
+        H2RequestHandler handler = new H2ContextHandlerAdapter(null);
+        route.setRequestHandler(HttpMethod.DELETE, handler);
+        route.setRequestHandler(HttpMethod.GET, handler);
+        assertEquals("GET, DELETE", route.getAllowedMethods());
+    }
+}